@@ -1,13 +1,17 @@
 #version 400 core
 
-in vec3 vPos;
-in vec2 vTex;
+in vec4 vPos; // x, y, z in blocks, w = face direction
+in vec4 vTex; // u, v in blocks, z/w = low/high byte of the block id
 
 out vec2 out_coord;
+flat out int out_face;
+flat out int out_block;
 
 uniform mat4 MVP;
 
 void main(void) {
-	gl_Position = MVP * vec4(vPos, 1.0);
-	out_coord = vec2(vTex);
-}
\ No newline at end of file
+	gl_Position = MVP * vec4(vPos.xyz, 1.0);
+	out_coord = vTex.xy;
+	out_face = int(vPos.w);
+	out_block = int(vTex.z) + int(vTex.w) * 256;
+}
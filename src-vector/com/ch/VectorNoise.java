@@ -0,0 +1,200 @@
+package com.ch;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+ * SimplexNoise.noise(float[], ...) on the Vector API, LANES points at a time.
+ * built on its own, next to the classes from src:
+ *   javac --release 17 --add-modules jdk.incubator.vector -cp <classes of src> -d <same dir> src-vector/com/ch/*.java
+ * and run with --add-modules jdk.incubator.vector. without either SimplexNoise stays on its scalar
+ * kernel, with both it's used once SimplexNoise.VECTORIZE is set, v in the game.
+ *
+ * the grid is taken BLOCK points at a time in output order, in three passes. the cells and the
+ * offsets into them are found in double vectors like the scalar kernel does, the corner hashes
+ * are table lookups and stay scalar, then the corner contributions are float vectors. the
+ * gradients come from the bits of their index instead of a table, out of range corners add 0
+ * instead of being skipped. every float operation is the one the scalar kernel does in the
+ * same order, so the result is the same to the bit.
+ *
+ * the lanes are what the cpu does best unless -Dvoxel.noise.lanes=4, 8 or 16 asks for fewer,
+ * see VectorNoiseBench.
+ */
+class VectorNoise implements SimplexNoise.Kernel {
+
+	private static final VectorSpecies<Float> F = species();
+	private static final VectorSpecies<Integer> I = VectorSpecies.of(int.class, F.vectorShape());
+	private static final int LANES = F.length();
+	// the cells are found in double, as many lanes as fit up to LANES. it stays in double, java 17
+	// doesn't compile converting to int, long or float into vector code
+	private static final VectorSpecies<Double> D = VectorSpecies.of(double.class,
+			VectorShape.forBitSize(Math.min(LANES, DoubleVector.SPECIES_PREFERRED.length()) * Double.SIZE));
+	private static final double ROUND = 1L << 52; // adding and taking it away rounds to a whole number
+	private static final int BLOCK = 256; // points per pass, a multiple of every lane count
+
+	private static final double F3 = 1.0/3.0, G3 = 1.0/6.0;
+	private static final float G3f = 1f/6f;
+
+	private static final ThreadLocal<Block> BLOCKS = ThreadLocal.withInitial(Block::new);
+
+	private static VectorSpecies<Float> species() {
+		int lanes = Integer.getInteger("voxel.noise.lanes", 0);
+		if (lanes == 0)
+			return FloatVector.SPECIES_PREFERRED;
+		if (lanes < 2 || lanes > FloatVector.SPECIES_PREFERRED.length())
+			throw new IllegalArgumentException("the cpu can't do " + lanes + " float lanes");
+		return VectorSpecies.of(float.class, VectorShape.forBitSize(lanes * Float.SIZE));
+	}
+
+	// one entry per point of a block
+	private static class Block {
+		final double[] xin = new double[BLOCK], yin = new double[BLOCK], zin = new double[BLOCK];
+		final double[] dx = new double[BLOCK], dy = new double[BLOCK], dz = new double[BLOCK];
+		final double[] i = new double[BLOCK], j = new double[BLOCK], k = new double[BLOCK];
+		final double[] order = new double[BLOCK]; // dx >= dy, dy >= dz and dx >= dz as bits 0 to 2
+		final float[] x0 = new float[BLOCK], y0 = new float[BLOCK], z0 = new float[BLOCK];
+		final float[] i1 = new float[BLOCK], j1 = new float[BLOCK], k1 = new float[BLOCK];
+		final float[] i2 = new float[BLOCK], j2 = new float[BLOCK], k2 = new float[BLOCK];
+		final int[] g0 = new int[BLOCK], g1 = new int[BLOCK], g2 = new int[BLOCK], g3 = new int[BLOCK];
+	}
+
+	@Override
+	public void noise(int[] perm, int[] permMod12, float[] out, int ox, int oy, int oz, int step, int nx, int ny, int nz, float scale) {
+		Block bl = BLOCKS.get();
+		int total = nx * ny * nz;
+		int x = 0, y = 0, z = 0;
+		double yin = (oy + y * step) / scale, zin = (oz + z * step) / scale; // in float first like the scalar kernel
+		for (int base = 0; base < total; base += BLOCK) {
+			int count = Math.min(BLOCK, total - base);
+			for (int p = 0; p < count; p++) {
+				bl.xin[p] = (ox + x * step) / scale;
+				bl.yin[p] = yin;
+				bl.zin[p] = zin;
+				if (++x == nx) {
+					x = 0;
+					if (++y == ny) {
+						y = 0;
+						z++;
+						zin = (oz + z * step) / scale;
+					}
+					yin = (oy + y * step) / scale;
+				}
+			}
+			cells(bl, count);
+			for (int p = 0; p < count; p++) {
+				bl.x0[p] = (float) bl.dx[p];
+				bl.y0[p] = (float) bl.dy[p];
+				bl.z0[p] = (float) bl.dz[p];
+				int ii = (int) bl.i[p] & 255, jj = (int) bl.j[p] & 255, kk = (int) bl.k[p] & 255;
+				int o = (int) bl.order[p], xy = o & 1, yz = o >> 1 & 1, xz = o >> 2;
+				int i1 = xy & xz, j1 = (xy ^ 1) & yz, k1 = (xz | yz) ^ 1; // the corners the branches of the scalar kernel pick
+				int i2 = xy | xz, j2 = (xy ^ 1) | yz, k2 = (xz & yz) ^ 1;
+				bl.i1[p] = i1; bl.j1[p] = j1; bl.k1[p] = k1;
+				bl.i2[p] = i2; bl.j2[p] = j2; bl.k2[p] = k2;
+				bl.g0[p] = permMod12[ii + perm[jj + perm[kk]]];
+				bl.g1[p] = permMod12[ii + i1 + perm[jj + j1 + perm[kk + k1]]];
+				bl.g2[p] = permMod12[ii + i2 + perm[jj + j2 + perm[kk + k2]]];
+				bl.g3[p] = permMod12[ii + 1 + perm[jj + 1 + perm[kk + 1]]];
+			}
+			contributions(bl, out, base, count);
+		}
+	}
+
+	// the cell and the offset into it of every point and what tells the simplex, in double like the scalar kernel
+	private static void cells(Block bl, int count) {
+		DoubleVector zero = DoubleVector.zero(D);
+		for (int p = 0; p < count; p += D.length()) {
+			DoubleVector xin = DoubleVector.fromArray(D, bl.xin, p);
+			DoubleVector yin = DoubleVector.fromArray(D, bl.yin, p);
+			DoubleVector zin = DoubleVector.fromArray(D, bl.zin, p);
+			DoubleVector s = xin.add(yin.add(zin)).mul(F3);
+			DoubleVector i = fastfloor(xin.add(s)), j = fastfloor(yin.add(s)), k = fastfloor(zin.add(s));
+			DoubleVector t = i.add(j).add(k).mul(G3);
+			DoubleVector dx = xin.sub(i.sub(t));
+			DoubleVector dy = yin.sub(j.sub(t));
+			DoubleVector dz = zin.sub(k.sub(t));
+			i.intoArray(bl.i, p);
+			j.intoArray(bl.j, p);
+			k.intoArray(bl.k, p);
+			dx.intoArray(bl.dx, p);
+			dy.intoArray(bl.dy, p);
+			dz.intoArray(bl.dz, p);
+			zero.add(1, dx.compare(VectorOperators.GE, dy))
+					.add(2, dy.compare(VectorOperators.GE, dz))
+					.add(4, dx.compare(VectorOperators.GE, dz)).intoArray(bl.order, p);
+		}
+	}
+
+	// the vector pass, out[base + p] for the first count points of the block
+	private static void contributions(Block bl, float[] out, int base, int count) {
+		for (int p = 0; p < count; p += LANES) {
+			FloatVector x0 = FloatVector.fromArray(F, bl.x0, p);
+			FloatVector y0 = FloatVector.fromArray(F, bl.y0, p);
+			FloatVector z0 = FloatVector.fromArray(F, bl.z0, p);
+			FloatVector n = FloatVector.zero(F);
+			n = n.add(corner(x0, y0, z0, bl.g0, p));
+			n = n.add(corner(
+					x0.sub(offset(bl.i1, p)).add(G3f),
+					y0.sub(offset(bl.j1, p)).add(G3f),
+					z0.sub(offset(bl.k1, p)).add(G3f), bl.g1, p));
+			n = n.add(corner(
+					x0.sub(offset(bl.i2, p)).add(2f * G3f),
+					y0.sub(offset(bl.j2, p)).add(2f * G3f),
+					z0.sub(offset(bl.k2, p)).add(2f * G3f), bl.g2, p));
+			n = n.add(corner(x0.sub(1f).add(3f * G3f), y0.sub(1f).add(3f * G3f), z0.sub(1f).add(3f * G3f), bl.g3, p));
+			n.mul(32f).intoArray(out, base + p, F.indexInRange(p, count));
+		}
+	}
+
+	private static FloatVector offset(float[] a, int p) {
+		return FloatVector.fromArray(F, a, p);
+	}
+
+	/*
+	 * one corner, 0 where it's out of range. gradient g of SimplexNoise.grad3 by its bits:
+	 * x is used below 8, y below 4 and from 8, z from 4. x is negated by bit 0, y by bit 1 below 4
+	 * and by bit 0 from 8, z by bit 1. an unused axis adds 0 where the scalar kernel multiplies by 0,
+	 * which can only differ in the sign of a zero the sum loses anyway.
+	 */
+	private static FloatVector corner(FloatVector x, FloatVector y, FloatVector z, int[] gs, int p) {
+		FloatVector t = FloatVector.broadcast(F, 0.6f).sub(x.mul(x)).sub(y.mul(y)).sub(z.mul(z));
+		VectorMask<Float> in = t.compare(VectorOperators.GT, 0f);
+		if (!in.anyTrue())
+			return FloatVector.zero(F);
+		IntVector g = IntVector.fromArray(I, gs, p);
+		IntVector bit0 = g.lanewise(VectorOperators.LSHL, 31);
+		IntVector bit1 = g.lanewise(VectorOperators.AND, 2).lanewise(VectorOperators.LSHL, 30);
+		VectorMask<Integer> below8 = g.compare(VectorOperators.LT, 8), from4 = g.compare(VectorOperators.GE, 4);
+		FloatVector zero = FloatVector.zero(F);
+		FloatVector gx = zero.blend(flip(x, bit0), below8.cast(F));
+		FloatVector gy = zero.blend(flip(y, bit1.blend(bit0, below8.not())), below8.and(from4).not().cast(F));
+		FloatVector gz = zero.blend(flip(z, bit1), from4.cast(F));
+		t = t.mul(t);
+		return zero.blend(t.mul(t).mul(gx.add(gy).add(gz)), in);
+	}
+
+	// negates the lanes whose sign has the top bit set
+	private static FloatVector flip(FloatVector v, IntVector sign) {
+		return v.reinterpretAsInts().lanewise(VectorOperators.XOR, sign).reinterpretAsFloats();
+	}
+
+	// what SimplexNoise.fastfloor gives, as a double. (int) is |x| rounded down with the sign put
+	// back, that holds up to 2^52, a lot further than any world goes
+	private static DoubleVector fastfloor(DoubleVector x) {
+		DoubleVector a = x.abs();
+		DoubleVector r = a.add(ROUND).sub(ROUND);
+		r = r.sub(1, r.compare(VectorOperators.GT, a));
+		return r.lanewise(VectorOperators.NEG, x.compare(VectorOperators.LT, 0)).sub(1, x.compare(VectorOperators.LE, 0));
+	}
+
+	@Override
+	public String toString() {
+		return "vector " + LANES + " lanes";
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.ch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * times SimplexNoise.noise(float[], ...) on the scalar kernel and on VectorNoise at every lane
+ * count the cpu has, each in a jvm of its own since the lanes are fixed when VectorNoise loads.
+ * the grids are the ones DensityStage asks for: a whole chunk, the lattice of spacing 2 and a column.
+ *   java --add-modules jdk.incubator.vector -cp <classes> com.ch.VectorNoiseBench
+ */
+public class VectorNoiseBench {
+
+	private static final int WARMUP = 20, RUNS = 30;
+	private static final int[][] GRIDS = { { 64, 64, 64, 1 }, { 33, 33, 33, 2 }, { 1, 70, 1, 1 } }; // nx, ny, nz, step
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length > 0) {
+			run(args[0]);
+			return;
+		}
+		List<String> kernels = new ArrayList<>();
+		kernels.add("scalar");
+		for (int lanes = 4; lanes <= 16; lanes *= 2)
+			kernels.add(Integer.toString(lanes));
+		System.out.println("kernel              chunk ms   lattice ms   column us");
+		for (String k : kernels) {
+			Process p = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+					"--add-modules", "jdk.incubator.vector", "-Dvoxel.noise.lanes=" + (k.equals("scalar") ? 0 : k),
+					"-cp", System.getProperty("java.class.path"), VectorNoiseBench.class.getName(), k).redirectErrorStream(true).start();
+			try (BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+				String line;
+				while ((line = r.readLine()) != null)
+					if (!line.startsWith("WARNING"))
+						System.out.println(line);
+			}
+			p.waitFor();
+		}
+	}
+
+	// one kernel, best of RUNS for every grid
+	private static void run(String kernel) {
+		SimplexNoise.VECTORIZE = !kernel.equals("scalar");
+		SimplexNoise noise = new SimplexNoise(42);
+		StringBuilder sb = new StringBuilder(String.format("%-18s", SimplexNoise.getKernel()));
+		for (int[] g : GRIDS) {
+			float[] out = new float[g[0] * g[1] * g[2]];
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < WARMUP + RUNS; i++) {
+				int o = i * 64;
+				long start = System.nanoTime();
+				noise.noise(out, o, -o, o, g[3], g[0], g[1], g[2], 10f);
+				if (i >= WARMUP)
+					best = Math.min(best, System.nanoTime() - start);
+			}
+			sb.append(g[0] == 1 ? String.format("%12.2f", best / 1e3) : String.format("%11.2f  ", best / 1e6));
+		}
+		System.out.println(sb);
+	}
+
+}
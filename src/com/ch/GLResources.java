@@ -0,0 +1,71 @@
+package com.ch;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * keeps count of the gl buffers and vertex arrays that are alive and how many bytes the buffers
+ * hold, so leaks show up as numbers that keep climbing.
+ * models can be released from any thread with disposeLater, the gl thread deletes them in flush.
+ */
+public class GLResources {
+
+	private static final AtomicInteger buffers = new AtomicInteger();
+	private static final AtomicLong bufferBytes = new AtomicLong();
+	private static final AtomicInteger vertexArrays = new AtomicInteger();
+
+	private static final ConcurrentLinkedQueue<Model> disposeQueue = new ConcurrentLinkedQueue<>();
+
+	public static void bufferCreated(long bytes) {
+		buffers.incrementAndGet();
+		bufferBytes.addAndGet(bytes);
+	}
+
+	public static void bufferDeleted(long bytes) {
+		buffers.decrementAndGet();
+		bufferBytes.addAndGet(-bytes);
+	}
+
+	// glBufferData on a live buffer, old is what it held before
+	public static void bufferResized(long old, long bytes) {
+		bufferBytes.addAndGet(bytes - old);
+	}
+
+	public static void vertexArrayCreated() {
+		vertexArrays.incrementAndGet();
+	}
+
+	public static void vertexArrayDeleted() {
+		vertexArrays.decrementAndGet();
+	}
+
+	public static void disposeLater(Model m) {
+		if (m != null)
+			disposeQueue.add(m);
+	}
+
+	// call on the gl thread, once per frame
+	public static void flush() {
+		Model m;
+		while ((m = disposeQueue.poll()) != null)
+			m.dispose();
+	}
+
+	public static int getBufferCount() {
+		return buffers.get();
+	}
+
+	public static long getBufferBytes() {
+		return bufferBytes.get();
+	}
+
+	public static int getVertexArrayCount() {
+		return vertexArrays.get();
+	}
+
+	public static int getPendingDisposals() {
+		return disposeQueue.size();
+	}
+
+}
@@ -0,0 +1,190 @@
+package com.ch;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/*
+ * open addressing map from primitive long keys to values, no boxing. linear probing with
+ * backward shift on remove so there are no tombstones. null values aren't allowed, a null
+ * value marks a free slot.
+ *
+ * one thread writes, any number of threads may read at the same time. reads are optimistic
+ * and only fall back to the read lock when a write got in between.
+ */
+public class LongHashMap<V> {
+
+	private long[] keys;
+	private Object[] values;
+	private int size, shift;
+
+	private final StampedLock lock = new StampedLock();
+
+	public LongHashMap() {
+		this(16);
+	}
+
+	public LongHashMap(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1; // at most half full
+		alloc(capacity);
+	}
+
+	public V get(long key) {
+		long stamp = lock.tryOptimisticRead();
+		V v = find(key);
+		if (!lock.validate(stamp)) {
+			stamp = lock.readLock();
+			try {
+				v = find(key);
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+		return v;
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	// returns the previous value
+	public V put(long key, V value) {
+		if (value == null)
+			throw new NullPointerException("null values aren't supported");
+		long stamp = lock.writeLock();
+		try {
+			int i = probe(key);
+			@SuppressWarnings("unchecked")
+			V old = (V) values[i];
+			keys[i] = key;
+			values[i] = value;
+			if (old == null && ++size > values.length / 2)
+				alloc(values.length * 2);
+			return old;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	// returns the removed value
+	public V remove(long key) {
+		long stamp = lock.writeLock();
+		try {
+			int i = probe(key);
+			@SuppressWarnings("unchecked")
+			V old = (V) values[i];
+			if (old == null)
+				return null;
+			// pull the following entries of the run back so probing never hits a hole
+			int m = values.length - 1;
+			for (int j = (i + 1) & m; values[j] != null; j = (j + 1) & m) {
+				int h = hash(keys[j]);
+				if (((j - h) & m) >= ((j - i) & m)) { // j's home isn't between i and j
+					keys[i] = keys[j];
+					values[i] = values[j];
+					i = j;
+				}
+			}
+			values[i] = null;
+			size--;
+			return old;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public void clear() {
+		long stamp = lock.writeLock();
+		try {
+			Arrays.fill(values, null);
+			size = 0;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	// walks the slots under the read lock, the writer must not change the map from inside
+	@SuppressWarnings("unchecked")
+	public void forEach(Consumer<? super V> action) {
+		long stamp = lock.readLock();
+		try {
+			Object[] vs = values;
+			for (int i = 0; i < vs.length; i++)
+				if (vs[i] != null)
+					action.accept((V) vs[i]);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/*
+	 * lookup without locking, may see a half done write. the arrays are read once so a resize
+	 * in between can't index out of bounds, and the probe gives up after a full lap.
+	 */
+	@SuppressWarnings("unchecked")
+	private V find(long key) {
+		long[] ks = keys;
+		Object[] vs = values;
+		if (ks.length != vs.length)
+			return null; // caught resizing, validate fails
+		int m = vs.length - 1;
+		int i = (int) (mix(key) >>> (64 - Integer.numberOfTrailingZeros(vs.length)));
+		for (int n = 0; n <= m; n++, i = (i + 1) & m) {
+			Object v = vs[i];
+			if (v == null)
+				return null;
+			if (ks[i] == key)
+				return (V) v;
+		}
+		return null;
+	}
+
+	// slot holding the key or the free slot where it goes
+	private int probe(long key) {
+		int m = values.length - 1;
+		int i = hash(key);
+		while (values[i] != null && keys[i] != key)
+			i = (i + 1) & m;
+		return i;
+	}
+
+	private int hash(long key) {
+		return (int) (mix(key) >>> shift);
+	}
+
+	private static long mix(long key) {
+		return key * 0x9E3779B97F4A7C15L; // fibonacci hashing, the top bits pick the slot
+	}
+
+	private void alloc(int capacity) {
+		long[] o_keys = keys;
+		Object[] o_values = values;
+		long[] n_keys = new long[capacity];
+		Object[] n_values = new Object[capacity];
+		int n_shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		if (o_values != null) {
+			int m = capacity - 1;
+			for (int j = 0; j < o_values.length; j++) {
+				if (o_values[j] == null)
+					continue;
+				int i = (int) (mix(o_keys[j]) >>> n_shift);
+				while (n_values[i] != null)
+					i = (i + 1) & m;
+				n_keys[i] = o_keys[j];
+				n_values[i] = o_values[j];
+			}
+		}
+		keys = n_keys;
+		values = n_values;
+		shift = n_shift;
+	}
+
+}
@@ -10,6 +10,7 @@ import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.PixelFormat;
 
 import com.ch.math.Vector3f;
+import com.ch.voxel.Chunk;
 import com.ch.voxel.World;
 
 public class Main {
@@ -17,6 +18,7 @@ public class Main {
 		initDisplay();
 		initGL();
 		loop();
+		w.close();
 		exit(0);
 		
 	}
@@ -91,11 +93,18 @@ public class Main {
 			
 			Display.setTitle("" + Timer.getFPS() + 
 					/* "   " + c.getTransform().getPos().toString() +*/ "   " 
-					+ ((Runtime.getRuntime().maxMemory() - Runtime.getRuntime().freeMemory()) / 1048576) + " of " + (Runtime.getRuntime().maxMemory() / 1048576));
+					+ ((Runtime.getRuntime().maxMemory() - Runtime.getRuntime().freeMemory()) / 1048576) + " of " + (Runtime.getRuntime().maxMemory() / 1048576)
+					+ "   gpu " + GLResources.getBufferCount() + " buffers " + (GLResources.getBufferBytes() / 1048576) + " MB"
+					+ "   chunks ready " + w.getPrefetcher().getReadyInTime() + " late " + w.getPrefetcher().getLate()
+					+ "   cache " + w.getCache()
+					+ "   mesh threads " + Chunk.getMeshThreads()
+					+ "   noise " + SimplexNoise.getKernel()
+					+ "   " + w.getPipeline());
 			
 			update(Timer.getDelta());
 			GL11.glClear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT);
 			render();
+			GLResources.flush();
 			
 			Display.update();
 			
@@ -104,8 +113,26 @@ public class Main {
 	}
 	
 	private static void update(float dt) {
+		while (Keyboard.next()) {
+			if (!Keyboard.getEventKeyState())
+				continue;
+			// render distance, + and - on the keyboard or the numpad
+			if (Keyboard.getEventKey() == Keyboard.KEY_EQUALS || Keyboard.getEventKey() == Keyboard.KEY_ADD)
+				w.setRenderDistance(w.getRenderDistance() + 1, w.getVerticalDistance());
+			if (Keyboard.getEventKey() == Keyboard.KEY_MINUS || Keyboard.getEventKey() == Keyboard.KEY_SUBTRACT)
+				w.setRenderDistance(w.getRenderDistance() - 1, w.getVerticalDistance());
+			// threads meshing the sections of one chunk, [ and ]
+			if (Keyboard.getEventKey() == Keyboard.KEY_RBRACKET)
+				Chunk.setMeshThreads(Chunk.getMeshThreads() + 1);
+			if (Keyboard.getEventKey() == Keyboard.KEY_LBRACKET)
+				Chunk.setMeshThreads(Chunk.getMeshThreads() - 1);
+			// noise on the vector kernel or the scalar one, v. both give the same terrain
+			if (Keyboard.getEventKey() == Keyboard.KEY_V)
+				SimplexNoise.VECTORIZE = !SimplexNoise.VECTORIZE;
+		}
 		c.processInput(dt, 5, .3f);
 		w.updatePos(c.getTransform().getPos().getX(), c.getTransform().getPos().getY(), c.getTransform().getPos().getZ());
+		w.update();
 	}
 
 	private static void render() {
@@ -0,0 +1,32 @@
+package com.ch;
+
+import java.nio.ByteBuffer;
+
+// cpu side quad mesh in the packed MeshBuilder vertex format, ready to be uploaded with Model.load
+public class Mesh {
+
+	private ByteBuffer vertices;
+	private int vertexCount;
+	
+	public Mesh(ByteBuffer vertices, int vertexCount) {
+		this.vertices = vertices;
+		this.vertexCount = vertexCount;
+	}
+	
+	public ByteBuffer getVertices() {
+		return vertices;
+	}
+	
+	public int getVertexCount() {
+		return vertexCount;
+	}
+	
+	public int getQuadCount() {
+		return vertexCount / 4;
+	}
+	
+	public int getSizeInBytes() {
+		return vertices.capacity();
+	}
+	
+}
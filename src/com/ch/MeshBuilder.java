@@ -0,0 +1,112 @@
+package com.ch;
+
+import java.nio.ByteBuffer;
+
+/*
+ * growable vertex buffer in direct memory. one builder is kept per thread and reused,
+ * so building a mesh only allocates when the buffer has to grow past its largest size so far.
+ * 
+ * vertices are packed into 8 bytes for chunk local geometry:
+ *   x, y, z, face  (unsigned bytes, positions 0..CHUNK_SIZE)
+ *   u, v, id low, id high  (unsigned bytes, uvs in blocks)
+ * every 4 vertices form a quad wound as 0, 1, 2, 0, 2, 3, indexed through QuadIndexBuffer.
+ */
+public class MeshBuilder {
+	
+	public static final int VERTEX_SIZE = 8;
+	
+	private static final ThreadLocal<MeshBuilder> POOL = new ThreadLocal<MeshBuilder>() {
+		@Override
+		protected MeshBuilder initialValue() {
+			return new MeshBuilder(1 << 14);
+		}
+	};
+	
+	// the calling thread's builder, emptied
+	public static MeshBuilder get() {
+		MeshBuilder b = POOL.get();
+		b.reset();
+		return b;
+	}
+	
+	private ByteBuffer vertices;
+	private int vertexCount;
+	
+	public MeshBuilder(int vertexCapacity) {
+		vertices = Util.createByteBuffer(vertexCapacity * VERTEX_SIZE);
+	}
+	
+	public void reset() {
+		vertices.clear();
+		vertexCount = 0;
+	}
+	
+	public void vertex(int x, int y, int z, int face, int u, int v, short id) {
+		if (vertices.remaining() < VERTEX_SIZE)
+			vertices = grow(vertices);
+		vertices.put((byte) x).put((byte) y).put((byte) z).put((byte) face);
+		vertices.put((byte) u).put((byte) v).put((byte) id).put((byte) (id >> 8));
+		vertexCount++;
+	}
+	
+	// degenerate quads of all zero vertices, they rasterize nothing and keep room for later updates
+	public void pad(int quads) {
+		int bytes = quads * 4 * VERTEX_SIZE;
+		while (vertices.remaining() < bytes)
+			vertices = grow(vertices);
+		for (int i = 0; i < bytes; i += 8)
+			vertices.putLong(0);
+		vertexCount += quads * 4;
+	}
+	
+	public int getVertexCount() {
+		return vertexCount;
+	}
+	
+	public int getQuadCount() {
+		return vertexCount / 4;
+	}
+	
+	public boolean isEmpty() {
+		return vertexCount == 0;
+	}
+	
+	// appends vertices from toByteArray of another builder
+	public void put(byte[] packed) {
+		while (vertices.remaining() < packed.length)
+			vertices = grow(vertices);
+		vertices.put(packed);
+		vertexCount += packed.length / VERTEX_SIZE;
+	}
+	
+	public byte[] toByteArray() {
+		byte[] b = new byte[vertices.position()];
+		getVertices().get(b);
+		return b;
+	}
+	
+	// view of the vertices built so far, valid until the builder is used again
+	public ByteBuffer getVertices() {
+		ByteBuffer v = vertices.duplicate();
+		v.flip();
+		return v;
+	}
+	
+	// copies the built vertices into an upload ready buffer of exactly the right size
+	public Mesh finish() {
+		ByteBuffer v = Util.createByteBuffer(vertices.position());
+		vertices.flip();
+		v.put(vertices).flip();
+		
+		Mesh m = new Mesh(v, vertexCount);
+		reset();
+		return m;
+	}
+	
+	private static ByteBuffer grow(ByteBuffer b) {
+		ByteBuffer n = Util.createByteBuffer(b.capacity() * 2);
+		b.flip();
+		return n.put(b);
+	}
+
+}
@@ -1,17 +1,66 @@
 package com.ch;
 
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL30;
 
+/*
+ * owns its vao and buffers, dispose() deletes them. meshes index through the shared
+ * QuadIndexBuffer, which isn't owned by any model.
+ */
 public class Model {
 
-	private int vao, size;
+	private int vao, vbo, ibo, size, indexType;
+	private long bytes; // held by vbo and ibo
 	
-	public Model(int vao, int count) {
+	public Model(int vao, int vbo, int ibo, int count, int indexType, long bytes) {
 		this.vao = vao;
+		this.vbo = vbo;
+		this.ibo = ibo;
 		this.size = count;
+		this.indexType = indexType;
+		this.bytes = bytes;
+	}
+	
+	// has to run on the gl thread, use GLResources.disposeLater from anywhere else
+	public void dispose() {
+		if (vao == 0)
+			return;
+		GL30.glDeleteVertexArrays(vao);
+		GLResources.vertexArrayDeleted();
+		long vboBytes = bytes;
+		if (ibo != 0) {
+			long iboBytes = size * 4L;
+			GL15.glDeleteBuffers(ibo);
+			GLResources.bufferDeleted(iboBytes);
+			vboBytes -= iboBytes;
+		}
+		if (vbo != 0) {
+			GL15.glDeleteBuffers(vbo);
+			GLResources.bufferDeleted(vboBytes);
+		}
+		vao = vbo = ibo = 0;
+		bytes = 0;
+	}
+	
+	public boolean isDisposed() {
+		return vao == 0;
+	}
+	
+	public long getSizeInBytes() {
+		return bytes;
+	}
+	
+	// overwrites part of the vertex data in place, offset in bytes
+	public void update(int offset, ByteBuffer data) {
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+		GL15.glBufferSubData(GL15.GL_ARRAY_BUFFER, offset, data);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
 	}
 	
 	public void draw() {
@@ -19,7 +68,7 @@ public class Model {
 		GL20.glEnableVertexAttribArray(0);
 		GL20.glEnableVertexAttribArray(1);
 		//GL11.glDrawArrays(GL11.GL_TRIANGLES, 0, size);
-		GL11.glDrawElements(GL11.GL_TRIANGLES, size, GL11.GL_UNSIGNED_INT, 0);
+		GL11.glDrawElements(GL11.GL_TRIANGLES, size, indexType, 0);
 		GL20.glDisableVertexAttribArray(0);
 		GL20.glDisableVertexAttribArray(1);
 		GL30.glBindVertexArray(0);
@@ -45,32 +94,65 @@ public class Model {
 	
 	public static Model load(float[] vertices, int[] indices) {
 		int vao = createVAO();
-		storeIndices(indices);
-		storeData(0, vertices);
+		int ibo = storeIndices(indices);
+		int vbo = storeData(0, vertices);
 		unbindVAO();
 		int v_count = indices.length;
-		return new Model(vao, v_count);
+		return new Model(vao, vbo, ibo, v_count, GL11.GL_UNSIGNED_INT, (vertices.length + indices.length) * 4L);
+	}
+	
+	public static Model load(Mesh mesh) {
+		int vao = createVAO();
+		int indexType = QuadIndexBuffer.bind(mesh.getQuadCount());
+		int vbo = storePackedData(0, mesh.getVertices());
+		unbindVAO();
+		return new Model(vao, vbo, 0, mesh.getQuadCount() * 6, indexType, mesh.getSizeInBytes());
 	}
 	
 	private static int createVAO() {
 		int vao = GL30.glGenVertexArrays();
+		GLResources.vertexArrayCreated();
 		GL30.glBindVertexArray(vao);
 		return vao;
 	}
 	
-	private static void storeData(int attrib, float[] data) {
+	private static int storeData(int attrib, float[] data) {
+		return storeData(attrib, Util.createFlippedBuffer(data));
+	}
+	
+	// MeshBuilder layout, two attributes of 4 unsigned bytes each, decoded in the shader
+	private static int storePackedData(int attrib, ByteBuffer data) {
+		int vbo = GL15.glGenBuffers();
+		GLResources.bufferCreated(data.remaining());
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
+		GL20.glVertexAttribPointer(attrib, 4, GL11.GL_UNSIGNED_BYTE, false, MeshBuilder.VERTEX_SIZE, 0);
+		GL20.glVertexAttribPointer(attrib + 1, 4, GL11.GL_UNSIGNED_BYTE, false, MeshBuilder.VERTEX_SIZE, 4);
+		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		return vbo;
+	}
+	
+	private static int storeData(int attrib, FloatBuffer data) {
 		int vbo = GL15.glGenBuffers();
+		GLResources.bufferCreated(data.remaining() * 4L);
 		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, vbo);
-		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, Util.createFlippedBuffer(data), GL15.GL_STATIC_DRAW);
+		GL15.glBufferData(GL15.GL_ARRAY_BUFFER, data, GL15.GL_STATIC_DRAW);
 		GL20.glVertexAttribPointer(attrib, 3, GL11.GL_FLOAT, false, 5 * 4,     0);
 		GL20.glVertexAttribPointer(attrib + 1, 2, GL11.GL_FLOAT, false, 5 * 4, 3 * 4);
 		GL15.glBindBuffer(GL15.GL_ARRAY_BUFFER, 0);
+		return vbo;
+	}
+	
+	private static int storeIndices(int[] indices) {
+		return storeIndices(Util.createFlippedBuffer(indices));
 	}
 	
-	private static void storeIndices(int[] indices) {
+	private static int storeIndices(IntBuffer indices) {
 		int ibo = GL15.glGenBuffers();
+		GLResources.bufferCreated(indices.remaining() * 4L);
 		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, ibo);
-		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, Util.createFlippedBuffer(indices), GL15.GL_STATIC_DRAW);
+		GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, indices, GL15.GL_STATIC_DRAW);
+		return ibo;
 	}
 	
 	private static void unbindVAO() {
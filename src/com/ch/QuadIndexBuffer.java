@@ -0,0 +1,65 @@
+package com.ch;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL15;
+
+/*
+ * one index buffer shared by every quad mesh, holding 0, 1, 2, 0, 2, 3 offset by 4 per quad.
+ * meshes emit their quads' vertices in that winding so only vertex data is uploaded per mesh.
+ * there's a 16 bit version for meshes of up to 65536 vertices and a 32 bit one for anything bigger.
+ * both grow lazily, keeping their buffer ids so vaos that already reference them stay valid.
+ */
+public class QuadIndexBuffer {
+	
+	public static final int MAX_SHORT_QUADS = 0x10000 / 4;
+	
+	private static int shortIbo, shortQuads;
+	private static int intIbo, intQuads;
+
+	// binds a buffer covering at least the given number of quads to the current vao, returns its index type
+	public static int bind(int quads) {
+		if (quads <= MAX_SHORT_QUADS) {
+			if (shortIbo == 0) {
+				shortIbo = GL15.glGenBuffers();
+				GLResources.bufferCreated(0);
+			}
+			GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, shortIbo);
+			if (quads > shortQuads) {
+				GLResources.bufferResized(shortQuads * 6L * 2, MAX_SHORT_QUADS * 6L * 2);
+				shortQuads = MAX_SHORT_QUADS; // small enough to just fill up to the limit
+				GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, create(shortQuads, false), GL15.GL_STATIC_DRAW);
+			}
+			return GL11.GL_UNSIGNED_SHORT;
+		}
+		
+		if (intIbo == 0) {
+			intIbo = GL15.glGenBuffers();
+			GLResources.bufferCreated(0);
+		}
+		GL15.glBindBuffer(GL15.GL_ELEMENT_ARRAY_BUFFER, intIbo);
+		if (quads > intQuads) {
+			int n = Integer.highestOneBit(quads - 1) << 1;
+			GLResources.bufferResized(intQuads * 6L * 4, n * 6L * 4);
+			intQuads = n;
+			GL15.glBufferData(GL15.GL_ELEMENT_ARRAY_BUFFER, create(intQuads, true), GL15.GL_STATIC_DRAW);
+		}
+		return GL11.GL_UNSIGNED_INT;
+	}
+	
+	private static ByteBuffer create(int quads, boolean wide) {
+		ByteBuffer b = Util.createByteBuffer(quads * 6 * (wide ? 4 : 2));
+		for (int q = 0; q < quads; q++) {
+			int i = q * 4;
+			if (wide)
+				b.putInt(i).putInt(i + 1).putInt(i + 2).putInt(i).putInt(i + 2).putInt(i + 3);
+			else
+				b.putShort((short) i).putShort((short) (i + 1)).putShort((short) (i + 2))
+				 .putShort((short) i).putShort((short) (i + 2)).putShort((short) (i + 3));
+		}
+		b.flip();
+		return b;
+	}
+
+}
@@ -1,5 +1,8 @@
 package com.ch;
 
+// An instance is one permutation of the hash table, built from a seed or DEFAULT for the
+// original table. The tables never change after construction so one
+// instance can be shared by every generation thread.
 public class SimplexNoise { // Simplex noise in 2D, 3D and 4D
 	 private static int grad3[][] = {{1,1,0},{-1,1,0},{1,-1,0},{-1,-1,0},
 	 {1,0,1},{-1,0,1},{1,0,-1},{-1,0,-1},
@@ -25,9 +28,39 @@ public class SimplexNoise { // Simplex noise in 2D, 3D and 4D
 	 251,34,242,193,238,210,144,12,191,179,162,241, 81,51,145,235,249,14,239,107,
 	 49,192,214, 31,181,199,106,157,184, 84,204,176,115,121,50,45,127, 4,150,254,
 	 138,236,205,93,222,114,67,29,24,72,243,141,128,195,78,66,215,61,156,180};
+	 // The noise of the original permutation above, what worlds without a seed are generated with
+	 public static final SimplexNoise DEFAULT = new SimplexNoise(p);
 	 // To remove the need for index wrapping, double the permutation table length
-	 private static int perm[] = new int[512];
-	 static { for(int i=0; i<512; i++) perm[i]=p[i & 255]; }
+	 private final int perm[] = new int[512];
+	 private final int permMod12[] = new int[512];
+	 private final long seed;
+	 // The same seed gives the same noise in every process
+	 public SimplexNoise(long seed) {
+	 this(shuffle(seed), seed);
+	 }
+	 private SimplexNoise(int[] p) {
+	 this(p, 0);
+	 }
+	 private SimplexNoise(int[] p, long seed) {
+	 for(int i=0; i<512; i++) perm[i]=p[i & 255];
+	 for(int i=0; i<512; i++) permMod12[i]=perm[i] % 12;
+	 this.seed = seed;
+	 }
+	 // 0..255 in an order picked by the seed, java.util.Random's sequence is fixed by its spec
+	 private static int[] shuffle(long seed) {
+	 int q[] = new int[256];
+	 for(int i=0; i<256; i++) q[i]=i;
+	 java.util.Random r = new java.util.Random(seed);
+	 for(int i=255; i>0; i--) {
+	 int j = r.nextInt(i+1);
+	 int t = q[i]; q[i] = q[j]; q[j] = t;
+	 }
+	 return q;
+	 }
+	 // 0 for DEFAULT
+	 public long getSeed() {
+	 return seed;
+	 }
 	 // A lookup table to traverse the simplex around a given point in 4D.
 	 // Details can be found where this table is used, in the 4D noise method.
 	 private static int simplex[][] = {
@@ -50,7 +83,7 @@ public class SimplexNoise { // Simplex noise in 2D, 3D and 4D
 	 private static double dot(int g[], double x, double y, double z, double w) {
 	 return g[0]*x + g[1]*y + g[2]*z + g[3]*w; }
 	 // 2D simplex noise
-	 public static double noise(double xin, double yin) {
+	 public double noise(double xin, double yin) {
 	 double n0, n1, n2; // Noise contributions from the three corners
 	 // Skew the input space to determine which simplex cell we're in
 	 final double F2 = 0.5*(Math.sqrt(3.0)-1.0);
@@ -105,7 +138,7 @@ public class SimplexNoise { // Simplex noise in 2D, 3D and 4D
 	 return 70.0 * (n0 + n1 + n2);
 	 }
 	 // 3D simplex noise
-	 public static double noise(double xin, double yin, double zin) {
+	 public double noise(double xin, double yin, double zin) {
 	 double n0, n1, n2, n3; // Noise contributions from the four corners
 	 // Skew the input space to determine which simplex cell we're in
 	 final double F3 = 1.0/3.0;
@@ -186,6 +219,123 @@ public class SimplexNoise { // Simplex noise in 2D, 3D and 4D
 	 // The result is scaled to stay just inside [-1,1]
 	 return 32.0*(n0 + n1 + n2 + n3);
 	 }
+	 // Same as above in float for whole grids, see noise(float[], ...)
+	 private static final double F3 = 1.0/3.0, G3 = 1.0/6.0;
+	 private static final float G3f = 1f/6f;
+	 private static final float[] GX = new float[12], GY = new float[12], GZ = new float[12];
+	 static {
+	 for(int i=0; i<12; i++) { GX[i]=grad3[i][0]; GY[i]=grad3[i][1]; GZ[i]=grad3[i][2]; }
+	 }
+	 // 3D simplex noise of every point of an integer grid divided by scale,
+	 // out[x + (y + z*ny)*nx] = noise((ox + x*step)/scale, (oy + y*step)/scale, (oz + z*step)/scale)
+	 // with the coordinates rounded to float first, the way a caller passing float coordinates would.
+	 // Gradients and hashes come from flat tables and the y and z terms are hoisted out of the rows.
+	 // The cell and the simplex are found in double like above, far from the origin float can't
+	 // tell them apart, the corner contributions are float. Stays within about 1e-6 of the double version.
+	 // Runs on the vector kernel when there is one, see Kernel.
+	 public void noise(float[] out, int ox, int oy, int oz, int step, int nx, int ny, int nz, float scale) {
+	 Kernel k = VECTORIZE ? VECTOR : null;
+	 if(k != null) k.noise(perm, permMod12, out, ox, oy, oz, step, nx, ny, nz, scale);
+	 else noiseScalar(out, ox, oy, oz, step, nx, ny, nz, scale);
+	 }
+	 private void noiseScalar(float[] out, int ox, int oy, int oz, int step, int nx, int ny, int nz, float scale) {
+	 float xs[] = new float[nx]; // the same for every row
+	 for(int x=0; x<nx; x++) xs[x] = (ox + x*step) / scale;
+	 for(int z=0; z<nz; z++) {
+	 double zin = (oz + z*step) / scale;
+	 for(int y=0; y<ny; y++) {
+	 double yin = (oy + y*step) / scale;
+	 double yz = yin + zin;
+	 int o = (y + z*ny)*nx;
+	 for(int x=0; x<nx; x++) {
+	 double xin = xs[x];
+	 double s = (xin+yz)*F3;
+	 int i = fastfloor(xin+s);
+	 int j = fastfloor(yin+s);
+	 int k = fastfloor(zin+s);
+	 double t = (i+j+k)*G3;
+	 double dx = xin-(i-t);
+	 double dy = yin-(j-t);
+	 double dz = zin-(k-t);
+	 int i1, j1, k1, i2, j2, k2;
+	 if(dx>=dy) {
+	 if(dy>=dz) { i1=1; j1=0; k1=0; i2=1; j2=1; k2=0; }
+	 else if(dx>=dz) { i1=1; j1=0; k1=0; i2=1; j2=0; k2=1; }
+	 else { i1=0; j1=0; k1=1; i2=1; j2=0; k2=1; }
+	 }
+	 else {
+	 if(dy<dz) { i1=0; j1=0; k1=1; i2=0; j2=1; k2=1; }
+	 else if(dx<dz) { i1=0; j1=1; k1=0; i2=0; j2=1; k2=1; }
+	 else { i1=0; j1=1; k1=0; i2=1; j2=1; k2=0; }
+	 }
+	 float x0 = (float) dx, y0 = (float) dy, z0 = (float) dz;
+	 float x1 = x0 - i1 + G3f, y1 = y0 - j1 + G3f, z1 = z0 - k1 + G3f;
+	 float x2 = x0 - i2 + 2f*G3f, y2 = y0 - j2 + 2f*G3f, z2 = z0 - k2 + 2f*G3f;
+	 float x3 = x0 - 1f + 3f*G3f, y3 = y0 - 1f + 3f*G3f, z3 = z0 - 1f + 3f*G3f;
+	 int ii = i & 255;
+	 int jj = j & 255;
+	 int kk = k & 255;
+	 float n = 0;
+	 float t0 = 0.6f - x0*x0 - y0*y0 - z0*z0;
+	 if(t0>0) {
+	 int g = permMod12[ii+perm[jj+perm[kk]]];
+	 t0 *= t0;
+	 n += t0 * t0 * (GX[g]*x0 + GY[g]*y0 + GZ[g]*z0);
+	 }
+	 float t1 = 0.6f - x1*x1 - y1*y1 - z1*z1;
+	 if(t1>0) {
+	 int g = permMod12[ii+i1+perm[jj+j1+perm[kk+k1]]];
+	 t1 *= t1;
+	 n += t1 * t1 * (GX[g]*x1 + GY[g]*y1 + GZ[g]*z1);
+	 }
+	 float t2 = 0.6f - x2*x2 - y2*y2 - z2*z2;
+	 if(t2>0) {
+	 int g = permMod12[ii+i2+perm[jj+j2+perm[kk+k2]]];
+	 t2 *= t2;
+	 n += t2 * t2 * (GX[g]*x2 + GY[g]*y2 + GZ[g]*z2);
+	 }
+	 float t3 = 0.6f - x3*x3 - y3*y3 - z3*z3;
+	 if(t3>0) {
+	 int g = permMod12[ii+1+perm[jj+1+perm[kk+1]]];
+	 t3 *= t3;
+	 n += t3 * t3 * (GX[g]*x3 + GY[g]*y3 + GZ[g]*z3);
+	 }
+	 out[o+x] = 32f*n;
+	 }
+	 }
+	 }
+	 }
+	 // noise(float[], ...) for the permutation given, the result has to be the same to the bit
+	 // so a world doesn't depend on the jvm it was generated on. VectorNoise in src-vector is
+	 // the one there is, it needs java 16 or later started with --add-modules jdk.incubator.vector.
+	 interface Kernel {
+	 void noise(int[] perm, int[] permMod12, float[] out, int ox, int oy, int oz, int step, int nx, int ny, int nz, float scale);
+	 }
+	 // true runs on the vector kernel if it loaded. it only breaks even with the scalar one at
+	 // 8 and 16 lanes and loses at 4, see VectorNoiseBench, so it's off unless asked for
+	 public static volatile boolean VECTORIZE = false;
+	 private static final Kernel VECTOR = loadVector();
+	 // null if the class isn't there, the jvm can't run it or it doesn't give what the scalar kernel gives
+	 private static Kernel loadVector() {
+	 Kernel k;
+	 try {
+	 k = (Kernel) Class.forName("com.ch.VectorNoise").getDeclaredConstructor().newInstance();
+	 } catch(ReflectiveOperationException | LinkageError e) {
+	 return null;
+	 }
+	 float[] a = new float[7*5*3], b = new float[a.length];
+	 DEFAULT.noiseScalar(a, -1000, 3, 77, 3, 7, 5, 3, 10f);
+	 k.noise(DEFAULT.perm, DEFAULT.permMod12, b, -1000, 3, 77, 3, 7, 5, 3, 10f);
+	 if(!java.util.Arrays.equals(a, b)) {
+	 System.err.println("vector noise differs from the scalar kernel, not using it");
+	 return null;
+	 }
+	 return k;
+	 }
+	 // which kernel noise(float[], ...) runs on
+	 public static String getKernel() {
+	 return VECTORIZE && VECTOR != null ? VECTOR.toString() : "scalar";
+	 }
 	 // 4D simplex noise
 	 double noise(double x, double y, double z, double w) {
 
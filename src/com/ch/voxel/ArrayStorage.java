@@ -0,0 +1,68 @@
+package com.ch.voxel;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class ArrayStorage extends BlockStorage {
+
+	private short[] blocks;
+	
+	public ArrayStorage() {
+		blocks = new short[SIZE];
+	}
+	
+	public ArrayStorage(short fill) {
+		this();
+		if (fill != Block.AIR)
+			Arrays.fill(blocks, fill);
+	}
+	
+	@Override
+	public short get(int index) {
+		return blocks[index];
+	}
+
+	@Override
+	public BlockStorage set(int index, short id) {
+		blocks[index] = id;
+		return this;
+	}
+	
+	@Override
+	public BlockStorage optimize() {
+		short id = blocks[0];
+		for (int i = 1; i < SIZE; i++)
+			if (blocks[i] != id)
+				return this;
+		return UniformStorage.of(id);
+	}
+
+	@Override
+	public BlockStorage copy() {
+		ArrayStorage s = new ArrayStorage();
+		System.arraycopy(blocks, 0, s.blocks, 0, SIZE);
+		return s;
+	}
+
+	@Override
+	public int getMemoryUsage() {
+		return blocks.length * 2;
+	}
+	
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(ARRAY);
+		for (short id : blocks)
+			out.writeShort(id);
+	}
+	
+	static ArrayStorage readFrom(DataInput in) throws IOException {
+		ArrayStorage s = new ArrayStorage();
+		for (int i = 0; i < SIZE; i++)
+			s.blocks[i] = in.readShort();
+		return s;
+	}
+
+}
@@ -2,20 +2,16 @@ package com.ch.voxel;
 
 public class Block {
 	
-	public int x, y, z;
-	public boolean ft, bk, tp, bt, lt, rt;
+	// block ids, stored per voxel in Chunk
+	public static final short AIR = 0;
+	public static final short SOLID = 1;
 	
-	public Block(int x, int y, int z) {
-		this.x = x;
-		this.y = y;
-		this.z = z;
-		
-		this.ft = false;
-		this.bk = false;
-		this.tp = false;
-		this.bt = false;
-		this.lt = false;
-		this.rt = false;
+	// face directions: -z, +z, +y, -y, -x, +x. face ^ 1 is the opposite direction
+	public static final int FT = 0, BK = 1, TP = 2, BT = 3, LT = 4, RT = 5;
+	public static final int FACES = 6;
+	
+	public static boolean isSolid(short id) {
+		return id != AIR;
 	}
 
 }
@@ -0,0 +1,60 @@
+package com.ch.voxel;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+public abstract class BlockStorage {
+	
+	public static final int SIZE = Chunk.CHUNK_SIZE * Chunk.CHUNK_SIZE * Chunk.CHUNK_SIZE;
+	
+	// first byte written by write(), tells read() which storage follows
+	static final int UNIFORM = 0, PALETTED = 1, ARRAY = 2;
+
+	public abstract short get(int index);
+	
+	// returns the storage to keep using, which may be a new one if this one can't hold the id
+	public abstract BlockStorage set(int index, short id);
+	
+	// returns a cheaper storage holding the same blocks if there is one
+	public BlockStorage optimize() {
+		return this;
+	}
+	
+	// solid bits of the CHUNK_SIZE voxels starting at index, bit n for index + n
+	public long getSolidRow(int index) {
+		long bits = 0;
+		for (int x = 0; x < Chunk.CHUNK_SIZE; x++)
+			if (Block.isSolid(get(index + x)))
+				bits |= 1L << x;
+		return bits;
+	}
+	
+	public boolean isUniform() {
+		return false;
+	}
+	
+	// the same blocks in a storage of their own, for handing them to another thread
+	public abstract BlockStorage copy();
+	
+	// approximate resident size of the voxel data in bytes
+	public abstract int getMemoryUsage();
+	
+	// the storage as is, tag byte first
+	public abstract void write(DataOutput out) throws IOException;
+	
+	public static BlockStorage read(DataInput in) throws IOException {
+		int type = in.readUnsignedByte();
+		switch (type) {
+		case UNIFORM:
+			return UniformStorage.of(in.readShort());
+		case PALETTED:
+			return PalettedStorage.readFrom(in);
+		case ARRAY:
+			return ArrayStorage.readFrom(in);
+		default:
+			throw new IOException("unknown block storage " + type);
+		}
+	}
+	
+}
@@ -1,11 +1,14 @@
 package com.ch.voxel;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import com.ch.GLResources;
+import com.ch.Mesh;
+import com.ch.MeshBuilder;
 import com.ch.Model;
-import com.ch.SimplexNoise;
-import com.ch.Util;
 import com.ch.math.Matrix4f;
 
 public class Chunk {
@@ -13,120 +16,364 @@ public class Chunk {
 	public static final int CHUNK_SIZE = 64;
 	private static final int CHUNK_SIZE_SQUARED = CHUNK_SIZE * CHUNK_SIZE;
 	private static final int CHUNK_SIZE_CUBED = CHUNK_SIZE * CHUNK_SIZE * CHUNK_SIZE;
+	
+	// meshes are built and updated in SECTION_SIZE cubes, SECTIONS per axis
+	public static final int SECTION_SIZE = 16;
+	public static final int SECTIONS = CHUNK_SIZE / SECTION_SIZE;
+	private static final int SECTIONS_CUBED = SECTIONS * SECTIONS * SECTIONS;
+
+	public static boolean PALETTE_STORAGE = true; // false keeps a plain short[] per chunk
+	public static Mesher MESHER = Mesher.GREEDY; // Mesher.NAIVE emits one quad per block face
+	// meshes the sections of a chunk in parallel, null meshes them on the calling thread. see setMeshThreads
+	public static volatile ForkJoinPool MESH_POOL = meshPool(Runtime.getRuntime().availableProcessors());
 
-	private Block[] blocks;
+	private BlockStorage blocks;
+	private long[] solid;
+	private long[][] faces;
+	private boolean culled;
+	private volatile boolean modified; // changed since it was generated or last saved
+	private Chunk[] neighbors = new Chunk[Block.FACES];
 	public int x, y, z;
 	private Model model;
 	
+	// what updateModel built last, drawing it never meshes anything
 	public Model getModel() {
+		return model;
+	}
+	
+	// uploads a mesh built off the gl thread and remeshes the dirty sections. gl thread only
+	public void updateModel() {
 		if (to_gen_model) {
 			createModel();
 			to_gen_model = false;
 		}
-		return model;
+		if (dirtySections != 0) {
+			if (model == null || !updateSections())
+				toGenModel(true);
+			dirtySections = 0;
+		}
+	}
+	
+	// true until updateModel brings the model up to date with the blocks and neighbours
+	public boolean isModelStale() {
+		return to_gen_model || dirtySections != 0;
 	}
 	
 	public Matrix4f getModelMatrix() {
 		return new Matrix4f().initTranslation(x * CHUNK_SIZE, y * CHUNK_SIZE, z * CHUNK_SIZE);
 	}
 
-	public Chunk(int _x, int _y, int _z) {
-		
+	// a chunk around blocks loaded from disk or generated by a Pipeline
+	public Chunk(int _x, int _y, int _z, BlockStorage blocks) {
 		this.x = _x;
 		this.y = _y;
 		this.z = _z;
+		this.blocks = blocks;
+	}
+	
+	// chunk coordinates packed 21 bits each into one long, keys the chunk maps
+	public static long key(int x, int y, int z) {
+		return ((long) x & 0x1FFFFF) | ((long) y & 0x1FFFFF) << 21 | ((long) z & 0x1FFFFF) << 42;
+	}
+	
+	public long key() {
+		return key(x, y, z);
+	}
+	
+	public static int keyX(long key) {
+		return (int) (key << 43 >> 43);
+	}
+	
+	public static int keyY(long key) {
+		return (int) (key << 22 >> 43);
+	}
+	
+	public static int keyZ(long key) {
+		return (int) (key << 1 >> 43);
+	}
+	
+	// block index inside the chunk, x + y * CHUNK_SIZE + z * CHUNK_SIZE^2
+	public static int index(int x, int y, int z) {
+		return x + y * CHUNK_SIZE + z * CHUNK_SIZE_SQUARED;
+	}
+	
+	public short getBlock(int x, int y, int z) {
+		return blocks.get(index(x, y, z));
+	}
+	
+	public short getBlock(int index) {
+		return blocks.get(index);
+	}
+	
+	public void setBlock(int index, short id) {
+		setBlock(index % CHUNK_SIZE, index / CHUNK_SIZE % CHUNK_SIZE, index / CHUNK_SIZE_SQUARED, id);
+	}
+	
+	/*
+	 * changes one block. once the chunk is culled only the rows around the block are re-culled
+	 * (on the neighbour too when it sits on the border) and only the touched sections are remeshed
+	 * the next time the model is asked for.
+	 */
+	public void setBlock(int x, int y, int z, short id) {
+		int i = index(x, y, z);
+		short old = blocks.get(i);
+		if (old == id)
+			return;
+		blocks = blocks.set(i, id);
+		modified = true;
+		if (!culled)
+			return;
 		
-		blocks = new Block[CHUNK_SIZE_CUBED];
-		
-		for (int i = 0; i < CHUNK_SIZE_CUBED; i++) {
-			int z = i / CHUNK_SIZE_SQUARED;
-			int ii = i - (z * CHUNK_SIZE_SQUARED);
-			int y = ii / CHUNK_SIZE;
-			int x = ii % CHUNK_SIZE;
-			if (SimplexNoise.noise((x + this.x * CHUNK_SIZE) / 10f, (y + this.y * CHUNK_SIZE) / 10f, (z + this.z * CHUNK_SIZE) / 10f) > 0.1f) {
-			blocks[i] = new Block(x, y, z);
+		if (Block.isSolid(old) != Block.isSolid(id)) {
+			if (solid == null) {
+				// first edit of a uniform chunk
+				updateBlocks();
+				for (int f = 0; f < Block.FACES; f++)
+					if (neighbors[f] != null)
+						neighbors[f].cullBorder(f ^ 1);
+				toGenModel();
+				return;
 			}
+			
+			solid[row(y, z)] ^= 1L << x;
+			recullRow(y, z);
+			if (y > 0)              recullRow(y - 1, z);
+			if (y < CHUNK_SIZE - 1) recullRow(y + 1, z);
+			if (z > 0)              recullRow(y, z - 1);
+			if (z < CHUNK_SIZE - 1) recullRow(y, z + 1);
+			
+			final int last = CHUNK_SIZE - 1;
+			if (x == 0 && neighbors[Block.LT] != null)
+				neighbors[Block.LT].cullBorderRow(Block.RT, row(y, z));
+			if (x == last && neighbors[Block.RT] != null)
+				neighbors[Block.RT].cullBorderRow(Block.LT, row(y, z));
+			if (y == 0 && neighbors[Block.BT] != null)
+				neighbors[Block.BT].cullBorderRow(Block.TP, row(last, z));
+			if (y == last && neighbors[Block.TP] != null)
+				neighbors[Block.TP].cullBorderRow(Block.BT, row(0, z));
+			if (z == 0 && neighbors[Block.FT] != null)
+				neighbors[Block.FT].cullBorderRow(Block.BK, row(y, last));
+			if (z == last && neighbors[Block.BK] != null)
+				neighbors[Block.BK].cullBorderRow(Block.FT, row(y, 0));
+			
+			markDirty(x - 1, y, z);
+			markDirty(x + 1, y, z);
+			markDirty(x, y - 1, z);
+			markDirty(x, y + 1, z);
+			markDirty(x, y, z - 1);
+			markDirty(x, y, z + 1);
 		}
+		markDirty(x, y, z);
+	}
+
+	public BlockStorage getStorage() {
+		return blocks;
+	}
+
+	public boolean isModified() {
+		return modified;
 	}
 	
-	
+	public void setModified(boolean modified) {
+		this.modified = modified;
+	}
+
+	public boolean isEmpty() {
+		return blocks == UniformStorage.AIR;
+	}
+
+	/*
+	 * occupancy and visible faces are kept as one long per row of voxels along x,
+	 * row = y + z * CHUNK_SIZE and bit = x, so a whole row is culled with a few shifts and ands.
+	 */
+	private static int row(int y, int z) {
+		return y + z * CHUNK_SIZE;
+	}
 
 	public void updateBlocks() {
-		for (int i = 0; i < CHUNK_SIZE_CUBED; i++) {
-			Block b = blocks[i];
-				if (b != null) {
-				int n_x = i - 1;
-				int p_x = i + 1;
-				int n_y = i - CHUNK_SIZE;
-				int p_y = i + CHUNK_SIZE;
-				int n_z = i - CHUNK_SIZE_SQUARED;
-				int p_z = i + CHUNK_SIZE_SQUARED;
-				
-				if (b.x - 1 < 0) {
-					//TODO: check neighbor chunk
-					b.lt = false;
-				} else {
-					Block bl = blocks[n_x];
-					if (bl == null)
-						b.lt = true;
-					else
-						b.lt = false;
-				}
-				if (b.y - 1 < 0) {
-					//TODO: check neighbor chunk
-					b.bt = false;
-				} else {
-					Block bl = blocks[n_y];
-					if (bl == null)
-						b.bt = true;
-					else
-						b.bt = false;
-				}
-				if (b.z - 1 < 0) {
-					//TODO: check neighbor chunk
-					b.ft = false;
-				} else {
-					Block bl = blocks[n_z];
-					if (bl == null)
-						b.ft = true;
-					else
-						b.ft = false;
-				}
-				
-				if (b.x + 1 >= CHUNK_SIZE) {
-					//TODO: check neighbor chunk
-					b.rt = false;
-				} else {
-					Block bl = blocks[p_x];
-					if (bl == null)
-						b.rt = true;
-					else
-						b.rt = false;
-				}
-				if (b.y + 1 >= CHUNK_SIZE) {
-					//TODO: check neighbor chunk
-					b.tp = false;
-				} else {
-					Block bl = blocks[p_y];
-					if (bl == null)
-						b.tp = true;
-					else
-						b.tp = false;
-				}
-				if (b.z + 1 >= CHUNK_SIZE) {
-					//TODO: check neighbor chunk
-					b.bk = false;
-				} else {
-					Block bl = blocks[p_z];
-					if (bl == null)
-						b.bk = true;
-					else
-						b.bk = false;
-				}
-			}
+		solid = null;
+		faces = null;
+		culled = true;
+		if (isEmpty())
+			return;
+		
+		if (!blocks.isUniform()) {
+			// the inside of a uniform chunk has no faces, only its borders are checked
+			solid = new long[CHUNK_SIZE_SQUARED];
+			faces = new long[Block.FACES][CHUNK_SIZE_SQUARED];
+			for (int r = 0; r < CHUNK_SIZE_SQUARED; r++)
+				solid[r] = blocks.getSolidRow(r * CHUNK_SIZE);
+			
+			for (int z = 0; z < CHUNK_SIZE; z++)
+				for (int y = 0; y < CHUNK_SIZE; y++)
+					cullRow(y, z);
+		}
+		
+		for (int f = 0; f < Block.FACES; f++)
+			cullBorder(f);
+		dirtySections = 0; // only a full mesh makes sense after this
+	}
+	
+	// faces inside the chunk, the border bits are left to cullBorder
+	private void cullRow(int y, int z) {
+		int r = row(y, z);
+		long s = solid[r];
+		faces[Block.LT][r] = s & ~(s << 1) & ~1L;
+		faces[Block.RT][r] = s & ~(s >>> 1) & ~(1L << (CHUNK_SIZE - 1));
+		faces[Block.BT][r] = y > 0 ? s & ~solid[r - 1] : 0;
+		faces[Block.TP][r] = y < CHUNK_SIZE - 1 ? s & ~solid[r + 1] : 0;
+		faces[Block.FT][r] = z > 0 ? s & ~solid[r - CHUNK_SIZE] : 0;
+		faces[Block.BK][r] = z < CHUNK_SIZE - 1 ? s & ~solid[r + CHUNK_SIZE] : 0;
+	}
+	
+	private void recullRow(int y, int z) {
+		cullRow(y, z);
+		int r = row(y, z);
+		cullBorderRow(Block.LT, r);
+		cullBorderRow(Block.RT, r);
+		if (y == 0)              cullBorderRow(Block.BT, r);
+		if (y == CHUNK_SIZE - 1) cullBorderRow(Block.TP, r);
+		if (z == 0)              cullBorderRow(Block.FT, r);
+		if (z == CHUNK_SIZE - 1) cullBorderRow(Block.BK, r);
+	}
+	
+	/*
+	 * faces on one border against the neighbouring chunk. without a neighbour the border
+	 * stays hidden, it gets culled again once the neighbour is linked.
+	 * sections whose border faces changed are marked for remeshing.
+	 */
+	private void cullBorder(int face) {
+		final int last = CHUNK_SIZE - 1;
+		switch (face) {
+		case Block.LT:
+		case Block.RT:
+			for (int r = 0; r < CHUNK_SIZE_SQUARED; r++)
+				cullBorderRow(face, r);
+			break;
+		case Block.BT:
+		case Block.TP:
+			for (int z = 0; z < CHUNK_SIZE; z++)
+				cullBorderRow(face, row(face == Block.BT ? 0 : last, z));
+			break;
+		default: // Block.FT, Block.BK
+			for (int y = 0; y < CHUNK_SIZE; y++)
+				cullBorderRow(face, row(y, face == Block.FT ? 0 : last));
+			break;
 		}
 	}
 	
+	// r has to be a row on that border for the y and z faces
+	private void cullBorderRow(int face, int r) {
+		if (!culled || isEmpty())
+			return;
+		Chunk n = neighbors[face];
+		final int last = CHUNK_SIZE - 1;
+		int y = r % CHUNK_SIZE;
+		int z = r / CHUNK_SIZE;
+		long changed;
+		
+		switch (face) {
+		case Block.LT:
+		case Block.RT:
+			int x = face == Block.LT ? 0 : last;
+			long open = n == null ? 0 : ~n.getSolidRow(r) >>> (last - x) & 1L;
+			changed = setBorderFaces(face, r, 1L << x, (getSolidRow(r) >>> x & open) << x);
+			break;
+		case Block.BT:
+		case Block.TP:
+			open = n == null ? 0 : ~n.getSolidRow(row(last - y, z));
+			changed = setBorderFaces(face, r, -1L, getSolidRow(r) & open);
+			break;
+		default: // Block.FT, Block.BK
+			open = n == null ? 0 : ~n.getSolidRow(row(y, last - z));
+			changed = setBorderFaces(face, r, -1L, getSolidRow(r) & open);
+			break;
+		}
+		
+		for (int sx = 0; sx < CHUNK_SIZE; sx += SECTION_SIZE)
+			if ((changed >>> sx & Mesher.SECTION_ROW) != 0)
+				markDirty(sx, y, z);
+	}
+	
+	// marks the section holding the block for remeshing, blocks just outside belong to the neighbour
+	private void markDirty(int x, int y, int z) {
+		final int last = CHUNK_SIZE - 1;
+		Chunk n = null;
+		if (x < 0)         n = neighbors[Block.LT];
+		else if (x > last) n = neighbors[Block.RT];
+		else if (y < 0)    n = neighbors[Block.BT];
+		else if (y > last) n = neighbors[Block.TP];
+		else if (z < 0)    n = neighbors[Block.FT];
+		else if (z > last) n = neighbors[Block.BK];
+		else {
+			if (culled)
+				dirtySections |= 1L << section(x / SECTION_SIZE, y / SECTION_SIZE, z / SECTION_SIZE);
+			return;
+		}
+		if (n != null)
+			n.markDirty(x & last, y & last, z & last);
+	}
+	
+	private static int section(int sx, int sy, int sz) {
+		return sx + sy * SECTIONS + sz * SECTIONS * SECTIONS;
+	}
+	
+	// returns the bits that changed
+	private long setBorderFaces(int face, int r, long mask, long visible) {
+		if (faces == null) {
+			if (visible == 0)
+				return 0;
+			faces = new long[Block.FACES][CHUNK_SIZE_SQUARED]; // uniform chunk with an open border
+		}
+		long old = faces[face][r];
+		faces[face][r] = (old & ~mask) | visible;
+		return faces[face][r] ^ old;
+	}
+	
+	// solid bits of a row along x, row = y + z * CHUNK_SIZE
+	public long getSolidRow(int r) {
+		return solid != null ? solid[r] : blocks.getSolidRow(r * CHUNK_SIZE);
+	}
+	
+	/*
+	 * neighbours are indexed by the face direction they touch. linking or unlinking
+	 * re-culls only that border on both chunks and remeshes whichever one changed.
+	 */
+	public Chunk getNeighbor(int face) {
+		return neighbors[face];
+	}
+	
+	public void link(int face, Chunk n) {
+		setNeighbor(face, n);
+		if (n != null)
+			n.setNeighbor(face ^ 1, this);
+	}
+	
+	public void unlink() {
+		for (int f = 0; f < Block.FACES; f++) {
+			Chunk n = neighbors[f];
+			if (n != null && n.neighbors[f ^ 1] == this)
+				n.setNeighbor(f ^ 1, null);
+			neighbors[f] = null;
+		}
+	}
+	
+	// leaving the world, stops reacting to neighbour changes before the chunks around it get unlinked
+	public void unload() {
+		culled = false;
+	}
+	
+	private void setNeighbor(int face, Chunk n) {
+		neighbors[face] = n;
+		if (culled)
+			cullBorder(face);
+	}
+	
+	// visible faces per direction, indexed by Block.FT..Block.RT then row
+	public long[][] getFaces() {
+		return faces;
+	}
+	
 //	class Vertex3i {
 //		
 //		public int x, y, z; 
@@ -138,38 +385,76 @@ public class Chunk {
 //		
 //	}
 	
-	private ArrayList<Float> vertices = new ArrayList<>();
-	private ArrayList<Integer> indices = new ArrayList<>();
+	private Mesh mesh; // built but not uploaded yet
 	private boolean to_gen_model;
 	
+	// where each section's quads live in the model, with some slack so edits can be uploaded in place
+	private int[] sectionOffset = new int[SECTIONS_CUBED];
+	private int[] sectionCapacity = new int[SECTIONS_CUBED];
+	private long dirtySections; // bit per section
+	
+	
+	// a pool of that many threads for MESH_POOL, or null below 2 where a pool only adds overhead
+	private static ForkJoinPool meshPool(int threads) {
+		return threads < 2 ? null : new ForkJoinPool(threads);
+	}
+	
+	/*
+	 * chunks meshed after this use the new pool. the old one is stopped once it ran out of work,
+	 * a chunk that grabbed it just before that meshes on its own thread.
+	 */
+	public static void setMeshThreads(int threads) {
+		ForkJoinPool old = MESH_POOL;
+		MESH_POOL = meshPool(threads);
+		if (old == null)
+			return;
+		Thread t = new Thread(() -> {
+			old.awaitQuiescence(1, TimeUnit.MINUTES);
+			old.shutdown();
+		}, "mesh pool shutdown");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	public static int getMeshThreads() {
+		ForkJoinPool pool = MESH_POOL;
+		return pool == null ? 1 : pool.getParallelism();
+	}
 	
 	public void toGenModel() { toGenModel(false); };
 	
 	public void toGenModel(boolean now) {
 
-		int max_index = 0;
-//		System.out.println("gen model");
-		for (int i = 0; i < CHUNK_SIZE_CUBED; i++) {
-			Block b = blocks[i];
-			if (b != null) {
-				max_index = gen(vertices, indices, b, max_index);
-					
+		byte[][] sections = null;
+		ForkJoinPool pool = MESH_POOL;
+		if (pool != null) {
+			sections = new byte[SECTIONS_CUBED][];
+			try {
+				pool.invoke(new SectionMeshTask(this, 0, SECTIONS_CUBED, sections));
+			} catch (RejectedExecutionException | CancellationException e) {
+				sections = null; // setMeshThreads shut the pool down meanwhile, mesh it here
 			}
 		}
-//		System.out.println("vertice   : " + vertices.size() / 5 + " -- floats : " + vertices.size());
-//		System.out.println("indices   : " + indices.size());
-//		System.out.println("triangles : " + indices.size() / 3);
-//		System.out.println("quads     : " + indices.size() / 6);
-//		System.out.println("---------------------------\nloading model arrays");
 		
-		// cant implement filtering and re-indexing for textured cubes
-//		{
-//			
-//			ArrayList<Integer>
-//			
-//		}
+		MeshBuilder builder = MeshBuilder.get();
+		int quads = 0;
+//		System.out.println("gen model");
+		for (int s = 0; s < SECTIONS_CUBED; s++) {
+			int start = builder.getQuadCount();
+			if (sections != null)
+				builder.put(sections[s]);
+			else
+				MESHER.mesh(this, s % SECTIONS, s / SECTIONS % SECTIONS, s / (SECTIONS * SECTIONS), builder);
+			int count = builder.getQuadCount() - start;
+			int capacity = count + 2 + count / 4 + borderSides(s) * SECTION_SIZE;
+			builder.pad(capacity - count);
+			sectionOffset[s] = start;
+			sectionCapacity[s] = capacity;
+			quads += count;
+		}
 		
-//		return Model.load(Util.toFloatArray(new_vertices), Util.toIntArray(new_indices));
+		mesh = quads == 0 ? null : builder.finish();
+		dirtySections = 0;
 		
 		if (now) {
 			createModel();
@@ -180,8 +465,53 @@ public class Chunk {
 		
 	}
 	
+	// sections on the chunk border get extra room for the faces that open up once a neighbour is linked
+	private static int borderSides(int s) {
+		return onBorder(s % SECTIONS) + onBorder(s / SECTIONS % SECTIONS) + onBorder(s / (SECTIONS * SECTIONS));
+	}
+	
+	private static int onBorder(int sc) {
+		return sc == 0 || sc == SECTIONS - 1 ? 1 : 0;
+	}
+	
+	// bytes waiting to be uploaded by the next updateModel
+	public int getPendingUploadSize() {
+		return to_gen_model && mesh != null ? mesh.getSizeInBytes() : 0;
+	}
+	
 	private void createModel() {
-		this.model = Model.load(Util.toFloatArray(vertices), Util.toIntArray(indices));
+		if (model != null)
+			model.dispose(); // replaced by a full rebuild
+		this.model = mesh == null ? null : Model.load(mesh);
+		mesh = null;
+	}
+	
+	// frees the gpu side and the culling data once the chunk is evicted, only the blocks stay. safe to call from any thread
+	public void dispose() {
+		GLResources.disposeLater(model);
+		model = null;
+		mesh = null;
+		solid = null;
+		faces = null;
+		to_gen_model = false;
+	}
+	
+	// remeshes the dirty sections into their slots of the model, false if one doesn't fit anymore
+	private boolean updateSections() {
+		MeshBuilder builder = MeshBuilder.get();
+		for (long bits = dirtySections; bits != 0; bits &= bits - 1) {
+			int s = Long.numberOfTrailingZeros(bits);
+			builder.reset();
+			MESHER.mesh(this, s % SECTIONS, s / SECTIONS % SECTIONS, s / (SECTIONS * SECTIONS), builder);
+			int count = builder.getQuadCount();
+			if (count > sectionCapacity[s])
+				return false;
+			if (sectionCapacity[s] == 0)
+				continue;
+			builder.pad(sectionCapacity[s] - count);
+			model.update(sectionOffset[s] * 4 * MeshBuilder.VERTEX_SIZE, builder.getVertices());
+		}
+		return true;
 	}
 	
 	public Model genModel() {
@@ -191,79 +521,4 @@ public class Chunk {
 		return this.model;
 	}
 
-	private static int gen(List<Float> vertices, List<Integer> indices, Block block, int max_index) {
-		
-		float x = block.x;
-		float y = block.y;
-		float z = block.z;
-		
-		if (block.ft) {
-			float[] tmp_v = { //
-				x,   y,   z,   0, 0, //
-				x+1, y,   z,   1, 0, //
-				x+1, y+1, z,   1, 1, //
-				x,   y+1, z,   0, 1, //
-			}; //
-			for (float f : tmp_v) vertices.add(f);
-			for (int i : new int[] {0, 1, 2, 0, 2, 3}) indices.add(max_index + i);
-			max_index += 4;
-		}
-		if (block.bk) {
-			float[] tmp_v = { //
-				x,   y,   z+1,   1, 0, //
-				x+1, y,   z+1,   0, 0, //
-				x+1, y+1, z+1,   0, 1, //
-				x,   y+1, z+1,   1, 1, //
-			}; //
-			for (float f : tmp_v) vertices.add(f);
-			for (int i : new int[] {0, 3, 2, 0, 2, 1}) indices.add(max_index + i);
-			max_index += 4;
-		}
-		if (block.bt) {
-			float[] tmp_v = { //
-				x,   y,   z,     0, 0, //
-				x+1, y,   z,   	 1, 0, //
-				x+1, y,   z+1,   1, 1, //
-				x,   y,   z+1,   0, 1, //
-			}; //
-			for (float f : tmp_v) vertices.add(f);
-			for (int i : new int[] {0, 3, 2, 0, 2, 1}) indices.add(max_index + i);
-			max_index += 4;
-		}
-		if (block.tp) {
-			float[] tmp_v = { //
-				x,   y+1, z,     0, 0, //
-				x+1, y+1, z,     1, 0, //
-				x+1, y+1, z+1,   1, 1, //
-				x,   y+1, z+1,   0, 1, //
-			}; //
-			for (float f : tmp_v) vertices.add(f);
-			for (int i : new int[] {0, 1, 2, 0, 2, 3}) indices.add(max_index + i);
-			max_index += 4;
-		}
-		if (block.lt) {
-			float[] tmp_v = { //
-				x,   y,   z,     1, 0, //
-				x,   y+1, z,     1, 1, //
-				x,   y+1, z+1,   0, 1, //
-				x,   y,   z+1,   0, 0, //
-			}; //
-			for (float f : tmp_v) vertices.add(f);
-			for (int i : new int[] {0, 1, 2, 0, 2, 3}) indices.add(max_index + i);
-			max_index += 4;
-		}
-		if (block.rt) {
-			float[] tmp_v = { //
-				x+1, y,   z,     0, 0, //
-				x+1, y+1, z,     0, 1, //
-				x+1, y+1, z+1,   1, 1, //
-				x+1, y,   z+1,   1, 0, //
-			}; //
-			for (float f : tmp_v) vertices.add(f);
-			for (int i : new int[] {0, 3, 2, 0, 2, 1}) indices.add(max_index + i);
-			max_index += 4;
-		}
-		return max_index;
-	}
-
 }
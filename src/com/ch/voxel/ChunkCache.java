@@ -0,0 +1,236 @@
+package com.ch.voxel;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * chunks that left the view, so walking back over a border doesn't rebuild them from scratch.
+ * the loaded chunks in World are the hot tier, with gpu mesh and blocks. below that:
+ *  warm: the chunk keeps its blocks, the mesh and culling data are gone. coming back costs a cull and a mesh.
+ *  cold: only the blocks, deflated. coming back costs an inflate on top.
+ *
+ * World saves a chunk's edits before it lands here, so anything in the cache can be dropped.
+ * over the budget warm chunks are compressed into cold ones and cold ones dropped after that.
+ * the victim is the farthest from the camera among the few least recently used.
+ * main thread only, apart from the compressing. a copy of the victim's blocks is deflated on a
+ * thread of its own and the result is picked up by update(), until then the chunk can still be
+ * taken back warm. the budget may be overshot by what's in flight for a frame or two.
+ */
+public class ChunkCache {
+
+	private static final int VICTIM_WINDOW = 8;
+	private static final int CHUNK_OVERHEAD = 1024; // roughly what a chunk costs besides its blocks
+
+	private final LinkedHashMap<Long, Chunk> warm = new LinkedHashMap<>(64, 0.75f, true);
+	private final LinkedHashMap<Long, byte[]> cold = new LinkedHashMap<>(64, 0.75f, true);
+	private final LinkedHashMap<Long, Chunk> compressing = new LinkedHashMap<>(); // still counted as warm
+	private final long budget;
+	private long warmBytes, coldBytes, compressingBytes;
+	
+	private final ExecutorService compressor = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "cache-compressor");
+		t.setDaemon(true);
+		t.setPriority(Thread.NORM_PRIORITY - 1);
+		return t;
+	});
+	private final ConcurrentLinkedQueue<Compressed> done = new ConcurrentLinkedQueue<>();
+
+	private int warmHits, coldHits, misses, compressed, dropped; // one of the first three per lookup
+
+	public ChunkCache(long budget) {
+		this.budget = budget;
+	}
+
+	// cx, cy, cz is the camera chunk, for picking victims
+	public void put(Chunk c, int cx, int cy, int cz) {
+		Long key = c.key();
+		byte[] stale = cold.remove(key);
+		if (stale != null)
+			coldBytes -= stale.length;
+		forget(key);
+		Chunk old = warm.put(key, c);
+		if (old != null)
+			warmBytes -= size(old);
+		warmBytes += size(c);
+		trim(cx, cy, cz);
+	}
+
+	// a chunk that is cold already, payload as RegionStore.encode wrote it
+	public void putCold(long key, byte[] data, int cx, int cy, int cz) {
+		Chunk old = warm.remove(key);
+		if (old != null)
+			warmBytes -= size(old);
+		forget(key);
+		byte[] stale = cold.put(key, data);
+		if (stale != null)
+			coldBytes -= stale.length;
+		coldBytes += data.length;
+		trim(cx, cy, cz);
+	}
+
+	// removes and returns the chunk if it's warm. a lookup asks takeCold next if it isn't, which counts the hit or miss
+	public Chunk takeWarm(long key) {
+		Chunk c = warm.remove(key);
+		if (c == null && (c = compressing.remove(key)) != null)
+			compressingBytes -= size(c); // the deflated copy is thrown away when it arrives
+		if (c == null)
+			return null;
+		warmHits++;
+		warmBytes -= size(c);
+		return c;
+	}
+
+	// removes and returns the deflated blocks if the chunk is cold
+	public byte[] takeCold(long key) {
+		byte[] data = cold.remove(key);
+		if (data == null) {
+			misses++;
+			return null;
+		}
+		coldHits++;
+		coldBytes -= data.length;
+		return data;
+	}
+
+	// call every frame, takes in what was compressed since the last call
+	public void update(int cx, int cy, int cz) {
+		if (done.isEmpty())
+			return;
+		Compressed r;
+		while ((r = done.poll()) != null) {
+			if (compressing.get(r.key) != r.chunk)
+				continue; // taken back or replaced meanwhile
+			compressing.remove(r.key);
+			compressingBytes -= size(r.chunk);
+			warmBytes -= size(r.chunk);
+			if (r.data == null) {
+				dropped++;
+				continue;
+			}
+			cold.put(r.key, r.data);
+			coldBytes += r.data.length;
+			compressed++;
+		}
+		trim(cx, cy, cz);
+	}
+	
+	private void forget(Long key) {
+		Chunk c = compressing.remove(key);
+		if (c != null) {
+			compressingBytes -= size(c);
+			warmBytes -= size(c);
+		}
+	}
+
+	private void trim(int cx, int cy, int cz) {
+		while (warmBytes - compressingBytes + coldBytes > budget) {
+			if (!warm.isEmpty()) {
+				Long key = victim(warm, cx, cy, cz);
+				Chunk c = warm.remove(key);
+				compressing.put(key, c);
+				compressingBytes += size(c);
+				BlockStorage blocks = c.getStorage().copy(); // the chunk may be taken back before this is done
+				compressor.execute(() -> {
+					byte[] data = null;
+					try {
+						data = RegionStore.encode(blocks);
+					} catch (IOException e) {
+						e.printStackTrace(); // dropped instead
+					}
+					done.add(new Compressed(key, c, data));
+				});
+			} else if (!compressing.isEmpty()) {
+				break; // the cold ones go after the ones being compressed are in
+			} else if (!cold.isEmpty()) {
+				byte[] data = cold.remove(victim(cold, cx, cy, cz));
+				coldBytes -= data.length;
+				dropped++;
+			} else {
+				break;
+			}
+		}
+	}
+
+	// farthest from the camera among the least recently used entries
+	private static Long victim(LinkedHashMap<Long, ?> tier, int cx, int cy, int cz) {
+		Long best = null;
+		long bestDistance = -1;
+		Iterator<? extends Map.Entry<Long, ?>> it = tier.entrySet().iterator();
+		for (int n = 0; n < VICTIM_WINDOW && it.hasNext(); n++) {
+			long key = it.next().getKey();
+			long dx = Chunk.keyX(key) - cx, dy = Chunk.keyY(key) - cy, dz = Chunk.keyZ(key) - cz;
+			long d = dx * dx + dy * dy + dz * dz;
+			if (d > bestDistance) {
+				bestDistance = d;
+				best = key;
+			}
+		}
+		return best;
+	}
+
+	private static long size(Chunk c) {
+		return c.getStorage().getMemoryUsage() + CHUNK_OVERHEAD;
+	}
+
+	public int getWarmCount() {
+		return warm.size() + compressing.size();
+	}
+
+	public int getColdCount() {
+		return cold.size();
+	}
+
+	public long getWarmBytes() {
+		return warmBytes;
+	}
+
+	public long getColdBytes() {
+		return coldBytes;
+	}
+
+	public int getWarmHits() {
+		return warmHits;
+	}
+
+	public int getColdHits() {
+		return coldHits;
+	}
+
+	public int getMisses() {
+		return misses;
+	}
+
+	public int getCompressed() {
+		return compressed;
+	}
+
+	public int getDropped() {
+		return dropped;
+	}
+
+	@Override
+	public String toString() {
+		return "warm " + getWarmCount() + " (" + (warmBytes >> 20) + " MB)   cold " + cold.size() + " (" + (coldBytes >> 20) + " MB)"
+				+ "   hits " + warmHits + "/" + coldHits + " misses " + misses;
+	}
+	
+	private static class Compressed {
+		
+		final Long key;
+		final Chunk chunk;
+		final byte[] data; // null if it couldn't be
+		
+		Compressed(Long key, Chunk chunk, byte[] data) {
+			this.key = key;
+			this.chunk = chunk;
+			this.data = data;
+		}
+		
+	}
+
+}
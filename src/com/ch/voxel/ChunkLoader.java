@@ -0,0 +1,267 @@
+package com.ch.voxel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import com.ch.voxel.gen.Pipeline;
+
+/*
+ * builds chunks off the render thread. a worker generates the blocks, culls the faces and
+ * meshes the chunk into a cpu side mesh, the finished chunk is then handed back through a
+ * lock free queue. nothing touches gl here, the main thread uploads whatever it polls.
+ *
+ * chunks saved in the RegionStore are read from disk, the rest is generated by the Pipeline. chunks coming
+ * back from the ChunkCache skip that, warm ones are only culled and meshed again, cold ones
+ * are inflated first.
+ * a chunk is culled without neighbours on the worker, its borders show up once it's linked
+ * on the main thread.
+ *
+ * queued requests sit in a binary heap and are taken nearest to the center first. recenter()
+ * re-sorts the whole heap in one pass when the camera moves. request() and recenter() are
+ * called from one thread.
+ */
+public class ChunkLoader {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition available = lock.newCondition();
+	private Request[] heap = new Request[64];
+	private int queued;
+	
+	private final Thread[] workers;
+	private volatile boolean running = true;
+	private final ConcurrentLinkedQueue<Chunk> ready = new ConcurrentLinkedQueue<>();
+	private final ConcurrentLinkedQueue<Long> failed = new ConcurrentLinkedQueue<>(); // keys that threw while being built
+	
+	private int cx, cy, cz; // center, in chunks
+	private long sequence; // keeps requests at the same distance in order
+	
+	private final RegionStore store; // saved chunks are loaded instead of generated, may be null
+	private final Pipeline pipeline; // shared by the workers
+
+	public ChunkLoader(RegionStore store, Pipeline pipeline) {
+		this(store, pipeline, Math.max(1, Runtime.getRuntime().availableProcessors() - 1)); // leave a core to the render thread
+	}
+
+	public ChunkLoader(RegionStore store, Pipeline pipeline, int threads) {
+		this.store = store;
+		this.pipeline = pipeline;
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(this::work, "chunk-worker-" + i);
+			workers[i].setDaemon(true);
+			workers[i].setPriority(Thread.NORM_PRIORITY - 1);
+			workers[i].start();
+		}
+	}
+	
+	private void work() {
+		while (running) {
+			Request r;
+			lock.lock();
+			try {
+				while (queued == 0 && running)
+					available.awaitUninterruptibly();
+				if (!running)
+					return;
+				r = pop();
+			} finally {
+				lock.unlock();
+			}
+			try {
+				Chunk c = r.chunk != null ? r.chunk : r.payload != null ? decode(r) : load(store, pipeline, r.x, r.y, r.z); // load or generate
+				c.updateBlocks();                   // cull
+				c.toGenModel();                     // mesh
+				ready.add(c);
+			} catch (RuntimeException e) {
+				e.printStackTrace(); // a broken stage shouldn't take the worker with it
+				failed.add(r.key());
+			}
+		}
+	}
+
+	static Chunk load(RegionStore store, Pipeline pipeline, int x, int y, int z) {
+		if (store != null) {
+			try {
+				BlockStorage b = store.load(x, y, z);
+				if (b != null)
+					return new Chunk(x, y, z, b);
+			} catch (IOException | RuntimeException e) {
+				e.printStackTrace(); // regenerated instead
+			}
+		}
+		return new Chunk(x, y, z, pipeline.generate(x, y, z));
+	}
+
+	private Chunk decode(Request r) {
+		try {
+			return new Chunk(r.x, r.y, r.z, RegionStore.decode(r.payload));
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace(); // loaded again instead
+			return load(store, pipeline, r.x, r.y, r.z);
+		}
+	}
+
+	public void request(int x, int y, int z) {
+		enqueue(new Request(x, y, z, sequence++));
+	}
+	
+	// a warm chunk from the cache, only culled and meshed
+	public void request(Chunk c) {
+		Request r = new Request(c.x, c.y, c.z, sequence++);
+		r.chunk = c;
+		enqueue(r);
+	}
+	
+	// a cold chunk from the cache, payload as RegionStore.encode wrote it
+	public void request(int x, int y, int z, byte[] payload) {
+		Request r = new Request(x, y, z, sequence++);
+		r.payload = payload;
+		enqueue(r);
+	}
+	
+	private void enqueue(Request r) {
+		r.distance = distance(r.x, r.y, r.z);
+		lock.lock();
+		try {
+			if (queued == heap.length) {
+				Request[] n_heap = new Request[heap.length * 2];
+				System.arraycopy(heap, 0, n_heap, 0, queued);
+				heap = n_heap;
+			}
+			heap[queued] = r;
+			up(queued++);
+			available.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/*
+	 * moves the center and re-sorts whatever is still queued. requests rejected by keep are
+	 * dropped and returned so the caller can forget them.
+	 */
+	public List<Request> recenter(int x, int y, int z, Predicate<Request> keep) {
+		List<Request> dropped = new ArrayList<>();
+		lock.lock();
+		try {
+			cx = x;
+			cy = y;
+			cz = z;
+			int n = 0;
+			for (int i = 0; i < queued; i++) {
+				Request r = heap[i];
+				if (keep.test(r)) {
+					r.distance = distance(r.x, r.y, r.z);
+					heap[n++] = r;
+				} else {
+					dropped.add(r);
+				}
+			}
+			for (int i = n; i < queued; i++)
+				heap[i] = null;
+			queued = n;
+			for (int i = queued / 2 - 1; i >= 0; i--)
+				down(i);
+		} finally {
+			lock.unlock();
+		}
+		return dropped;
+	}
+	
+	private int distance(int x, int y, int z) {
+		return (x - cx) * (x - cx) + (y - cy) * (y - cy) + (z - cz) * (z - cz);
+	}
+	
+	private Request pop() {
+		Request top = heap[0];
+		heap[0] = heap[--queued];
+		heap[queued] = null;
+		if (queued > 0)
+			down(0);
+		return top;
+	}
+	
+	private void up(int i) {
+		Request r = heap[i];
+		while (i > 0) {
+			int p = (i - 1) >>> 1;
+			if (!r.before(heap[p]))
+				break;
+			heap[i] = heap[p];
+			i = p;
+		}
+		heap[i] = r;
+	}
+	
+	private void down(int i) {
+		Request r = heap[i];
+		int half = queued >>> 1;
+		while (i < half) {
+			int c = 2 * i + 1;
+			if (c + 1 < queued && heap[c + 1].before(heap[c]))
+				c++;
+			if (!heap[c].before(r))
+				break;
+			heap[i] = heap[c];
+			i = c;
+		}
+		heap[i] = r;
+	}
+
+	// next finished chunk or null
+	public Chunk poll() {
+		return ready.poll();
+	}
+	
+	// key of the next chunk that couldn't be built or null. it can be requested again
+	public Long pollFailed() {
+		return failed.poll();
+	}
+	
+	public int getQueuedCount() {
+		return queued;
+	}
+
+	public void shutdown() {
+		lock.lock();
+		try {
+			running = false;
+			available.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		ready.clear();
+		failed.clear();
+	}
+	
+	public static class Request {
+		
+		public final int x, y, z;
+		private int distance; // squared, only changed under the lock
+		private final long order;
+		Chunk chunk; // set when it comes back warm
+		byte[] payload; // or cold
+		
+		private Request(int x, int y, int z, long order) {
+			this.x = x;
+			this.y = y;
+			this.z = z;
+			this.order = order;
+		}
+		
+		public long key() {
+			return Chunk.key(x, y, z);
+		}
+		
+		private boolean before(Request o) {
+			return distance != o.distance ? distance < o.distance : order < o.order;
+		}
+		
+	}
+
+}
@@ -0,0 +1,318 @@
+package com.ch.voxel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+/*
+ * append only log of block edits, so an edit is durable without rewriting its region.
+ *
+ * the log is a series of segment files edits.<n>.log. a segment is a run of batches:
+ * int record count, int crc32 of the records, then the records, each a long chunk key,
+ * int block index and short id. replay stops at the first batch that's cut short or fails
+ * its crc, that's where a crash tore the last write.
+ *
+ * append() only copies the record into a buffer and hands out a sequence number. a flusher
+ * thread writes whatever piled up as one batch and fsyncs it, so one fsync covers every edit
+ * of the last FLUSH_MILLIS (group commit). awaitDurable() blocks until a sequence number is
+ * on disk.
+ *
+ * requestRotate() has the flusher seal the current segment and start the next one, so the
+ * caller never waits on the fsync, takeSealed() hands the sealed file back. once everything a sealed
+ * segment and the ones before it hold has reached the region files they can be deleted,
+ * reached meaning RegionStore.flush() returned: payloads and region headers both forced.
+ */
+public class EditJournal implements Closeable {
+
+	public static int FLUSH_MILLIS = 5;
+	private static final int FLUSH_BYTES = 64 << 10; // the flusher is woken early past this
+	private static final int RECORD = 8 + 4 + 2;
+	private static final int BATCH_HEADER = 4 + 4;
+
+	public interface Visitor {
+		void edit(long key, int index, short id);
+	}
+
+	private final Path dir;
+
+	private final Object io = new Object(); // the channel, one batch is written at a time
+	private FileChannel channel;
+	private long segment;
+	private volatile long size; // bytes in the current segment
+
+	private final Object lock = new Object(); // the buffers and sequence numbers
+	private ByteBuffer active = ByteBuffer.allocate(FLUSH_BYTES * 2);
+	private ByteBuffer writing = ByteBuffer.allocate(FLUSH_BYTES * 2);
+	private long appended, durable;
+	private IOException failure;
+	private boolean rotating; // the flusher seals the segment next
+	private final AtomicReference<Path> sealed = new AtomicReference<>();
+
+	private Thread flusher;
+	private volatile boolean running;
+
+	public EditJournal(Path dir) {
+		this.dir = dir;
+	}
+
+	// the segments on disk, oldest first
+	public List<Path> segments() throws IOException {
+		List<Path> files = new ArrayList<>();
+		if (!Files.isDirectory(dir))
+			return files;
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "edits.*.log")) {
+			for (Path p : ds)
+				files.add(p);
+		}
+		Collections.sort(files, (a, b) -> Long.compare(number(a), number(b)));
+		return files;
+	}
+
+	private static long number(Path p) {
+		String n = p.getFileName().toString();
+		return Long.parseLong(n.substring("edits.".length(), n.length() - ".log".length()));
+	}
+
+	// calls v for every intact record of the segment in order, returns how many there were
+	public static int replay(Path segment, Visitor v) throws IOException {
+		int records = 0;
+		try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ)) {
+			ByteBuffer head = ByteBuffer.allocate(BATCH_HEADER);
+			CRC32 crc = new CRC32();
+			while (true) {
+				head.clear();
+				if (!readFully(ch, head))
+					break;
+				head.flip();
+				int count = head.getInt();
+				int sum = head.getInt();
+				if (count <= 0 || count > (ch.size() - ch.position()) / RECORD)
+					break;
+				ByteBuffer batch = ByteBuffer.allocate(count * RECORD);
+				if (!readFully(ch, batch))
+					break;
+				crc.reset();
+				crc.update(batch.array(), 0, batch.limit());
+				if ((int) crc.getValue() != sum)
+					break;
+				batch.flip();
+				for (int i = 0; i < count; i++)
+					v.edit(batch.getLong(), batch.getInt(), batch.getShort());
+				records += count;
+			}
+		}
+		return records;
+	}
+
+	private static boolean readFully(FileChannel ch, ByteBuffer b) throws IOException {
+		while (b.hasRemaining())
+			if (ch.read(b) < 0)
+				return false;
+		return true;
+	}
+
+	// starts a fresh segment after the ones on disk and the flusher
+	public void open() throws IOException {
+		List<Path> old = segments();
+		Files.createDirectories(dir);
+		synchronized (io) {
+			openSegment(old.isEmpty() ? 0 : number(old.get(old.size() - 1)) + 1);
+		}
+		running = true;
+		flusher = new Thread(this::flushLoop, "edit-journal");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	private void openSegment(long n) throws IOException {
+		segment = n;
+		channel = FileChannel.open(file(n), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		size = 0;
+	}
+
+	private Path file(long n) {
+		return dir.resolve("edits." + n + ".log");
+	}
+
+	// returns the sequence number of the edit
+	public long append(long key, int index, short id) {
+		synchronized (lock) {
+			if (active.remaining() < RECORD) {
+				// the flusher fell behind, keep taking edits
+				ByteBuffer b = ByteBuffer.allocate(active.capacity() * 2);
+				active.flip();
+				b.put(active);
+				active = b;
+			}
+			active.putLong(key).putInt(index).putShort(id);
+			if (active.position() >= FLUSH_BYTES)
+				lock.notifyAll();
+			return ++appended;
+		}
+	}
+
+	public long getAppended() {
+		synchronized (lock) {
+			return appended;
+		}
+	}
+
+	public long getDurable() {
+		synchronized (lock) {
+			return durable;
+		}
+	}
+
+	public void awaitDurable(long sequence) throws IOException {
+		synchronized (lock) {
+			while (durable < sequence) {
+				if (failure != null)
+					throw failure;
+				if (!running)
+					throw new IOException("journal closed");
+				lock.notifyAll(); // no need to wait out the flush interval
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException(e);
+				}
+			}
+		}
+	}
+
+	// bytes in the current segment
+	public long getSize() {
+		return size;
+	}
+
+	private void flushLoop() {
+		while (running) {
+			boolean rotate;
+			synchronized (lock) {
+				if (active.position() < FLUSH_BYTES && !rotating) {
+					try {
+						lock.wait(FLUSH_MILLIS);
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				rotate = rotating;
+				rotating = false;
+			}
+			try {
+				if (rotate)
+					sealed.set(rotate());
+				else
+					flush();
+			} catch (IOException e) {
+				synchronized (lock) {
+					failure = e;
+					lock.notifyAll();
+				}
+				return;
+			}
+		}
+	}
+
+	// writes and fsyncs what was appended so far as one batch
+	public void flush() throws IOException {
+		synchronized (io) {
+			ByteBuffer b;
+			long sequence;
+			synchronized (lock) {
+				if (active.position() == 0)
+					return;
+				b = active;
+				active = writing;
+				writing = b;
+				sequence = appended;
+			}
+			b.flip();
+			CRC32 crc = new CRC32();
+			crc.update(b.array(), 0, b.limit());
+			ByteBuffer head = ByteBuffer.allocate(BATCH_HEADER);
+			head.putInt(b.limit() / RECORD).putInt((int) crc.getValue()).flip();
+			ByteBuffer[] batch = { head, b };
+			long written = 0, total = BATCH_HEADER + b.limit();
+			while (written < total)
+				written += channel.write(batch);
+			channel.force(false);
+			size += total;
+			b.clear();
+			synchronized (lock) {
+				durable = sequence;
+				lock.notifyAll();
+			}
+		}
+	}
+
+	// asks the flusher to seal the current segment, takeSealed() returns it once that's done
+	public void requestRotate() {
+		synchronized (lock) {
+			rotating = true;
+			lock.notifyAll();
+		}
+	}
+	
+	// the segment the flusher sealed since the last call, null if none
+	public Path takeSealed() {
+		return sealed.getAndSet(null);
+	}
+
+	// flushes and seals the current segment, later edits go to a new one. returns the sealed file
+	private Path rotate() throws IOException {
+		synchronized (io) {
+			flush();
+			channel.close();
+			Path sealed = file(segment);
+			openSegment(segment + 1);
+			return sealed;
+		}
+	}
+
+	public void delete(Path segment) throws IOException {
+		Files.deleteIfExists(segment);
+	}
+	
+	// deletes the segment and every older one
+	public void deleteThrough(Path segment) throws IOException {
+		long n = number(segment);
+		for (Path p : segments())
+			if (number(p) <= n)
+				Files.deleteIfExists(p);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!running)
+			return;
+		try {
+			flush();
+		} finally {
+			running = false;
+			synchronized (lock) {
+				lock.notifyAll();
+			}
+			try {
+				flusher.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (io) {
+				channel.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.ch.voxel;
+
+import java.util.Arrays;
+
+import com.ch.MeshBuilder;
+
+/*
+ * merges coplanar visible faces of the same block type into maximal rectangles.
+ * each face direction is walked slice by slice along its normal, with the slice
+ * flattened into a mask of (u, v) block ids. merging stays inside the section so
+ * sections can be remeshed on their own.
+ */
+public class GreedyMesher extends Mesher {
+	
+	private static final int S = Chunk.SECTION_SIZE;
+	private static final int CS = Chunk.CHUNK_SIZE;
+	
+	private static final ThreadLocal<short[]> MASK = new ThreadLocal<short[]>() {
+		@Override
+		protected short[] initialValue() {
+			return new short[S * S];
+		}
+	};
+
+	@Override
+	public void mesh(Chunk chunk, int sx, int sy, int sz, MeshBuilder out) {
+		long[][] faces = chunk.getFaces();
+		if (faces == null)
+			return;
+		
+		short[] mask = MASK.get();
+		int ox = sx * S, oy = sy * S, oz = sz * S;
+		for (int f = 0; f < Block.FACES; f++)
+			for (int s = 0; s < S; s++)
+				if (slice(chunk, faces[f], f, s, ox, oy, oz, mask))
+					merge(out, f, s, ox, oy, oz, mask);
+	}
+	
+	/*
+	 * fills mask[u + v * S] with the block id of every visible face in slice s of the section,
+	 * AIR elsewhere. x faces use u = z, v = y; z faces u = x, v = y; y faces u = x, v = z.
+	 */
+	private static boolean slice(Chunk chunk, long[] rows, int face, int s, int ox, int oy, int oz, short[] mask) {
+		Arrays.fill(mask, Block.AIR);
+		boolean any = false;
+		
+		if (face == Block.LT || face == Block.RT) {
+			int x = ox + s;
+			for (int v = 0; v < S; v++)
+				for (int u = 0; u < S; u++)
+					if ((rows[oy + v + (oz + u) * CS] >>> x & 1) != 0) {
+						mask[u + v * S] = chunk.getBlock(x, oy + v, oz + u);
+						any = true;
+					}
+		} else if (face == Block.FT || face == Block.BK) {
+			int z = oz + s;
+			for (int v = 0; v < S; v++)
+				for (long bits = rows[oy + v + z * CS] >>> ox & SECTION_ROW; bits != 0; bits &= bits - 1) {
+					int u = Long.numberOfTrailingZeros(bits);
+					mask[u + v * S] = chunk.getBlock(ox + u, oy + v, z);
+					any = true;
+				}
+		} else {
+			int y = oy + s;
+			for (int v = 0; v < S; v++)
+				for (long bits = rows[y + (oz + v) * CS] >>> ox & SECTION_ROW; bits != 0; bits &= bits - 1) {
+					int u = Long.numberOfTrailingZeros(bits);
+					mask[u + v * S] = chunk.getBlock(ox + u, y, oz + v);
+					any = true;
+				}
+		}
+		return any;
+	}
+	
+	private static void merge(MeshBuilder out, int face, int s, int ox, int oy, int oz, short[] mask) {
+		for (int v = 0; v < S; v++) {
+			for (int u = 0; u < S;) {
+				short id = mask[u + v * S];
+				if (id == Block.AIR) {
+					u++;
+					continue;
+				}
+				
+				int w = 1;
+				while (u + w < S && mask[u + w + v * S] == id)
+					w++;
+				
+				int h = 1;
+				grow: while (v + h < S) {
+					for (int k = 0; k < w; k++)
+						if (mask[u + k + (v + h) * S] != id)
+							break grow;
+					h++;
+				}
+				
+				for (int j = 0; j < h; j++)
+					Arrays.fill(mask, u + (v + j) * S, u + w + (v + j) * S, Block.AIR);
+				
+				if (face == Block.LT || face == Block.RT)
+					quad(out, face, ox + s, oy + v, oz + u, w, h, id);
+				else if (face == Block.FT || face == Block.BK)
+					quad(out, face, ox + u, oy + v, oz + s, w, h, id);
+				else
+					quad(out, face, ox + u, oy + s, oz + v, w, h, id);
+				
+				u += w;
+			}
+		}
+	}
+
+}
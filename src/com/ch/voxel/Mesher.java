@@ -0,0 +1,63 @@
+package com.ch.voxel;
+
+import com.ch.MeshBuilder;
+
+public abstract class Mesher {
+	
+	public static final Mesher NAIVE = new NaiveMesher();
+	public static final Mesher GREEDY = new GreedyMesher();
+	
+	// bits of one section along a chunk row
+	static final long SECTION_ROW = (1L << Chunk.SECTION_SIZE) - 1;
+	
+	// appends the visible faces of one SECTION_SIZE cube of the chunk, sx, sy, sz in sections
+	public abstract void mesh(Chunk chunk, int sx, int sy, int sz, MeshBuilder out);
+	
+	/*
+	 * one quad of a face direction covering w by h blocks starting at block x, y, z.
+	 * w runs along x for the z and y faces and along z for the x faces, h along the
+	 * remaining axis. uvs are in blocks so the texture repeats once per block.
+	 * vertices are ordered so the shared 0, 1, 2, 0, 2, 3 quad indices wind them front facing.
+	 */
+	protected static void quad(MeshBuilder b, int face, int x, int y, int z, int w, int h, short id) {
+		switch (face) {
+		case Block.FT:
+			b.vertex(x,   y,   z,   face, 0, 0, id);
+			b.vertex(x+w, y,   z,   face, w, 0, id);
+			b.vertex(x+w, y+h, z,   face, w, h, id);
+			b.vertex(x,   y+h, z,   face, 0, h, id);
+			break;
+		case Block.BK:
+			b.vertex(x,   y,   z+1, face, w, 0, id);
+			b.vertex(x,   y+h, z+1, face, w, h, id);
+			b.vertex(x+w, y+h, z+1, face, 0, h, id);
+			b.vertex(x+w, y,   z+1, face, 0, 0, id);
+			break;
+		case Block.BT:
+			b.vertex(x,   y,   z,   face, 0, 0, id);
+			b.vertex(x,   y,   z+h, face, 0, h, id);
+			b.vertex(x+w, y,   z+h, face, w, h, id);
+			b.vertex(x+w, y,   z,   face, w, 0, id);
+			break;
+		case Block.TP:
+			b.vertex(x,   y+1, z,   face, 0, 0, id);
+			b.vertex(x+w, y+1, z,   face, w, 0, id);
+			b.vertex(x+w, y+1, z+h, face, w, h, id);
+			b.vertex(x,   y+1, z+h, face, 0, h, id);
+			break;
+		case Block.LT:
+			b.vertex(x,   y,   z,   face, w, 0, id);
+			b.vertex(x,   y+h, z,   face, w, h, id);
+			b.vertex(x,   y+h, z+w, face, 0, h, id);
+			b.vertex(x,   y,   z+w, face, 0, 0, id);
+			break;
+		default: // Block.RT
+			b.vertex(x+1, y,   z,   face, 0, 0, id);
+			b.vertex(x+1, y,   z+w, face, w, 0, id);
+			b.vertex(x+1, y+h, z+w, face, w, h, id);
+			b.vertex(x+1, y+h, z,   face, 0, h, id);
+			break;
+		}
+	}
+
+}
@@ -0,0 +1,31 @@
+package com.ch.voxel;
+
+import com.ch.MeshBuilder;
+
+// one quad per visible block face
+public class NaiveMesher extends Mesher {
+
+	@Override
+	public void mesh(Chunk chunk, int sx, int sy, int sz, MeshBuilder out) {
+		long[][] faces = chunk.getFaces();
+		if (faces == null)
+			return;
+		
+		final int S = Chunk.SECTION_SIZE;
+		int ox = sx * S, oy = sy * S, oz = sz * S;
+		long section = SECTION_ROW << ox;
+		
+		for (int z = oz; z < oz + S; z++) {
+			for (int y = oy; y < oy + S; y++) {
+				int r = y + z * Chunk.CHUNK_SIZE;
+				for (int f = 0; f < Block.FACES; f++) {
+					for (long bits = faces[f][r] & section; bits != 0; bits &= bits - 1) {
+						int x = Long.numberOfTrailingZeros(bits);
+						quad(out, f, x, y, z, 1, 1, chunk.getBlock(x, y, z));
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,275 @@
+package com.ch.voxel;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*
+ * block ids packed into a long[] through a per chunk palette. entries are 1, 2, 4, 8 bits wide
+ * and never straddle two longs. past 256 distinct ids the palette is dropped and the
+ * raw ids are stored in 16 bits.
+ */
+public class PalettedStorage extends BlockStorage {
+
+	private static final int MAX_PALETTE_BITS = 8;
+	private static final int DIRECT_BITS = 16;
+	private static final int LINEAR_SEARCH_MAX = 16; // small palettes are scanned, bigger ones hashed
+
+	private long[] data;
+	private int bits, shift, slot;
+	private long mask;
+
+	private short[] palette; // null in direct mode
+	private int paletteSize;
+	private int[] lookup; // open addressing, palette index + 1
+
+	public PalettedStorage() {
+		this(Block.AIR);
+	}
+
+	public PalettedStorage(short fill) {
+		palette = new short[2];
+		palette[0] = fill;
+		paletteSize = 1;
+		setBits(1);
+		data = new long[length(bits)];
+	}
+	
+	private PalettedStorage(int bits, short[] palette, int paletteSize, long[] data) {
+		setBits(bits);
+		this.palette = palette;
+		this.paletteSize = paletteSize;
+		this.data = data;
+		rebuildLookup();
+	}
+
+	@Override
+	public short get(int index) {
+		int v = (int) ((data[index >>> shift] >>> ((index & slot) * bits)) & mask);
+		return palette == null ? (short) v : palette[v];
+	}
+
+	@Override
+	public BlockStorage set(int index, short id) {
+		write(index, paletteIndex(id));
+		return this;
+	}
+	
+	@Override
+	public BlockStorage optimize() {
+		compact();
+		return paletteSize == 1 ? UniformStorage.of(palette[0]) : this;
+	}
+
+	@Override
+	public long getSolidRow(int index) {
+		if (bits != 1 || Chunk.CHUNK_SIZE != 64)
+			return super.getSolidRow(index);
+		// a row is exactly one long of 1 bit entries
+		long w = data[index >>> shift];
+		return (Block.isSolid(palette[0]) ? ~w : 0) | (paletteSize > 1 && Block.isSolid(palette[1]) ? w : 0);
+	}
+
+	@Override
+	public BlockStorage copy() {
+		return new PalettedStorage(bits, palette == null ? null : palette.clone(), paletteSize, data.clone());
+	}
+
+	@Override
+	public int getMemoryUsage() {
+		return data.length * 8 + (palette == null ? 0 : palette.length * 2) + (lookup == null ? 0 : lookup.length * 4);
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(PALETTED);
+		out.writeByte(bits);
+		out.writeShort(palette == null ? 0 : paletteSize);
+		for (int i = 0; palette != null && i < paletteSize; i++)
+			out.writeShort(palette[i]);
+		for (int i = 0, n = length(bits); i < n; i++)
+			out.writeLong(data[i]);
+	}
+	
+	static PalettedStorage readFrom(DataInput in) throws IOException {
+		int bits = in.readUnsignedByte();
+		if (bits != 1 && bits != 2 && bits != 4 && bits != 8 && bits != DIRECT_BITS)
+			throw new IOException("bad palette width " + bits);
+		int size = in.readUnsignedShort();
+		if (bits == DIRECT_BITS ? size != 0 : size < 1 || size > 1 << bits)
+			throw new IOException("bad palette size " + size + " for width " + bits);
+		short[] palette = null;
+		if (bits != DIRECT_BITS) {
+			palette = new short[1 << bits];
+			for (int i = 0; i < size; i++)
+				palette[i] = in.readShort();
+		}
+		long[] data = new long[length(bits)];
+		for (int i = 0; i < data.length; i++)
+			data[i] = in.readLong();
+		return new PalettedStorage(bits, palette, size, data);
+	}
+
+	public int getBits() {
+		return bits;
+	}
+
+	public int getPaletteSize() {
+		return palette == null ? -1 : paletteSize;
+	}
+
+	/*
+	 * drops palette entries that are no longer referenced and narrows the entries if possible.
+	 * the backing array is repacked in place and kept, so growing again later doesn't allocate.
+	 */
+	public void compact() {
+		int[] used = new int[palette == null ? 1 << DIRECT_BITS : paletteSize];
+		for (int i = 0; i < SIZE; i++)
+			used[read(i)]++;
+
+		int count = 0;
+		for (int i = 0; i < used.length; i++)
+			if (used[i] != 0)
+				count++;
+		if (count > 1 << MAX_PALETTE_BITS)
+			return;
+
+		int n_bits = bitsFor(count);
+		short[] n_palette = new short[1 << n_bits];
+		int[] remap = used; // reused as old index -> new index
+		int n = 0;
+		for (int i = 0; i < used.length; i++) {
+			if (used[i] != 0) {
+				n_palette[n] = palette == null ? (short) i : palette[i];
+				remap[i] = n++;
+			}
+		}
+
+		if (n_bits == bits && palette != null && n == paletteSize)
+			return; // nothing to drop
+
+		int o_bits = bits, o_shift = shift, o_slot = slot;
+		long o_mask = mask;
+		setBits(n_bits);
+		// entries only move towards the start, so walking forward never clobbers unread data
+		for (int i = 0; i < SIZE; i++)
+			write(i, remap[(int) ((data[i >>> o_shift] >>> ((i & o_slot) * o_bits)) & o_mask)]);
+
+		palette = n_palette;
+		paletteSize = n;
+		rebuildLookup();
+	}
+
+	private int paletteIndex(short id) {
+		if (palette == null)
+			return id & 0xFFFF;
+
+		if (lookup == null) {
+			for (int i = 0; i < paletteSize; i++)
+				if (palette[i] == id)
+					return i;
+		} else {
+			int m = lookup.length - 1;
+			for (int h = hash(id) & m; lookup[h] != 0; h = (h + 1) & m)
+				if (palette[lookup[h] - 1] == id)
+					return lookup[h] - 1;
+		}
+
+		if (paletteSize == palette.length) {
+			if (bits == MAX_PALETTE_BITS) {
+				grow(DIRECT_BITS);
+				return id & 0xFFFF;
+			}
+			grow(bits << 1);
+		}
+		palette[paletteSize] = id;
+		if (lookup != null)
+			insertLookup(id, paletteSize);
+		return paletteSize++;
+	}
+
+	private void grow(int n_bits) {
+		int o_bits = bits, o_shift = shift, o_slot = slot;
+		long o_mask = mask;
+		long[] old = data;
+		boolean direct = n_bits == DIRECT_BITS;
+
+		setBits(n_bits);
+		if (old.length >= length(n_bits)) {
+			// entries only move towards the end, walk backwards to repack in place
+			for (int i = SIZE - 1; i >= 0; i--) {
+				int v = (int) ((old[i >>> o_shift] >>> ((i & o_slot) * o_bits)) & o_mask);
+				write(i, direct ? palette[v] & 0xFFFF : v);
+			}
+		} else {
+			data = new long[length(n_bits)];
+			for (int i = 0; i < SIZE; i++) {
+				int v = (int) ((old[i >>> o_shift] >>> ((i & o_slot) * o_bits)) & o_mask);
+				write(i, direct ? palette[v] & 0xFFFF : v);
+			}
+		}
+
+		if (direct) {
+			palette = null;
+			lookup = null;
+			paletteSize = 0;
+		} else {
+			short[] n_palette = new short[1 << n_bits];
+			System.arraycopy(palette, 0, n_palette, 0, paletteSize);
+			palette = n_palette;
+			rebuildLookup();
+		}
+	}
+
+	private int read(int index) {
+		return (int) ((data[index >>> shift] >>> ((index & slot) * bits)) & mask);
+	}
+
+	private void write(int index, int value) {
+		int w = index >>> shift;
+		int o = (index & slot) * bits;
+		data[w] = (data[w] & ~(mask << o)) | ((long) value << o);
+	}
+
+	private void setBits(int bits) {
+		this.bits = bits;
+		this.shift = 6 - Integer.numberOfTrailingZeros(bits); // log2 of entries per long
+		this.slot = (1 << shift) - 1;
+		this.mask = (1L << bits) - 1;
+	}
+
+	private void rebuildLookup() {
+		if (palette == null || palette.length <= LINEAR_SEARCH_MAX) {
+			lookup = null;
+			return;
+		}
+		lookup = new int[palette.length * 2];
+		for (int i = 0; i < paletteSize; i++)
+			insertLookup(palette[i], i);
+	}
+
+	private void insertLookup(short id, int index) {
+		int m = lookup.length - 1;
+		int h = hash(id) & m;
+		while (lookup[h] != 0)
+			h = (h + 1) & m;
+		lookup[h] = index + 1;
+	}
+
+	private static int hash(short id) {
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static int bitsFor(int entries) {
+		int b = 1;
+		while ((1 << b) < entries)
+			b <<= 1;
+		return b;
+	}
+
+	private static int length(int bits) {
+		return SIZE * bits / 64;
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.ch.voxel;
+
+/*
+ * follows the camera position frame to frame and guesses where it'll be LOOK_AHEAD seconds
+ * from now, so the chunks around that point can be requested before the camera gets there.
+ * velocity is smoothed over a few frames so mouse jitter doesn't throw the guess around.
+ *
+ * also counts, for every chunk that came into view, whether it was already loaded then.
+ */
+public class Prefetcher {
+
+	public static float LOOK_AHEAD = 1.5f; // seconds, 0 turns prefetching off
+	private static final float SMOOTHING = 0.2f; // weight of the newest frame
+	private static final float MAX_FRAME = 0.5f; // longer gaps are teleports, the velocity restarts
+
+	private float x, y, z;
+	private float vx, vy, vz; // units per second
+	private long last = -1;
+
+	private int ready, late;
+
+	public void update(float x, float y, float z, long nanos) {
+		if (last >= 0) {
+			float dt = (nanos - last) / 1e9f;
+			if (dt > MAX_FRAME) {
+				vx = vy = vz = 0;
+			} else if (dt > 0) {
+				vx += ((x - this.x) / dt - vx) * SMOOTHING;
+				vy += ((y - this.y) / dt - vy) * SMOOTHING;
+				vz += ((z - this.z) / dt - vz) * SMOOTHING;
+			}
+		}
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		last = nanos;
+	}
+
+	public float getPredictedX() {
+		return x + vx * LOOK_AHEAD;
+	}
+
+	public float getPredictedY() {
+		return y + vy * LOOK_AHEAD;
+	}
+
+	public float getPredictedZ() {
+		return z + vz * LOOK_AHEAD;
+	}
+
+	// a chunk came into view, loaded says whether it was there already
+	void entered(boolean loaded) {
+		if (loaded)
+			ready++;
+		else
+			late++;
+	}
+
+	public int getReadyInTime() {
+		return ready;
+	}
+
+	public int getLate() {
+		return late;
+	}
+
+}
@@ -0,0 +1,164 @@
+package com.ch.voxel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+
+/*
+ * SIZE^3 chunks in one file. the file is cut into 4 KB sectors, the first ones hold a header
+ * with one entry per chunk: the sector its payload starts at (0 if the chunk was never saved)
+ * and the payload length in bytes. payloads always start on a sector boundary.
+ *
+ * the header stays mapped, payloads are read into the heap with positional reads.
+ *
+ * a crash never leaves an entry pointing at a torn payload or at someone else's. a payload is
+ * never written over, every write goes to a free run of sectors and its entry waits in memory.
+ * flush() forces the payloads first, then puts the waiting entries into the header and forces
+ * that. the sectors the old entries pointed at are only free again after that, until then the
+ * header on disk may still point at them. a crash loses whatever wasn't flushed, the chunks read
+ * back the way they were at the last flush.
+ */
+public class RegionFile implements Closeable {
+
+	public static final int SIZE = 16; // chunks per axis
+	private static final int CHUNKS = SIZE * SIZE * SIZE;
+	private static final int SECTOR = 4096;
+	private static final int ENTRY = 8; // int sector, int length
+	private static final int HEADER_SECTORS = CHUNKS * ENTRY / SECTOR;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final BitSet used = new BitSet(); // pointed at by the header on disk or by a waiting entry
+	private final BitSet released = new BitSet(); // free once the header stops pointing at them
+	private final BitSet waiting = new BitSet(); // entries written since the last flush
+	private final int[] waitingStart = new int[CHUNKS], waitingLength = new int[CHUNKS];
+
+	public RegionFile(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SECTORS * SECTOR); // sizes a new file
+		used.set(0, HEADER_SECTORS);
+		long sectors = (channel.size() + SECTOR - 1) / SECTOR;
+		for (int i = 0; i < CHUNKS; i++) {
+			int start = header.getInt(i * ENTRY);
+			int length = header.getInt(i * ENTRY + 4);
+			if (start == 0)
+				continue;
+			long end = (long) start + ((long) length + SECTOR - 1) / SECTOR; // a broken entry may overflow an int
+			int taken = used.nextSetBit(start);
+			if (start < HEADER_SECTORS || length <= 0 || end > sectors || taken >= 0 && taken < end) {
+				clear(i); // points outside the file or into another chunk, the file is damaged
+				continue;
+			}
+			used.set(start, (int) end);
+		}
+	}
+
+	// index of a chunk inside its region
+	public static int index(int cx, int cy, int cz) {
+		return Math.floorMod(cx, SIZE) + Math.floorMod(cy, SIZE) * SIZE + Math.floorMod(cz, SIZE) * SIZE * SIZE;
+	}
+
+	public synchronized boolean contains(int index) {
+		return start(index) != 0;
+	}
+	
+	// where the payload is now, waiting entries first
+	private int start(int index) {
+		return waiting.get(index) ? waitingStart[index] : header.getInt(index * ENTRY);
+	}
+	
+	private int length(int index) {
+		return waiting.get(index) ? waitingLength[index] : header.getInt(index * ENTRY + 4);
+	}
+
+	// the payload or null if the chunk isn't in the file
+	public synchronized byte[] read(int index) throws IOException {
+		int start = start(index);
+		int length = length(index);
+		if (start == 0)
+			return null;
+		byte[] data = new byte[length];
+		ByteBuffer b = ByteBuffer.wrap(data); // a mapping per read would only be released by the gc
+		long pos = (long) start * SECTOR;
+		while (b.hasRemaining()) {
+			int n = channel.read(b, pos);
+			if (n < 0)
+				throw new IOException("chunk " + index + " ends past the end of the region");
+			pos += n;
+		}
+		return data;
+	}
+
+	// the payload goes to free sectors, the header points at it after the next flush()
+	public synchronized void write(int index, byte[] data, int length) throws IOException {
+		int needed = sectors(length);
+		int start = allocate(needed);
+		try {
+			ByteBuffer b = ByteBuffer.wrap(data, 0, length);
+			long pos = (long) start * SECTOR;
+			while (b.hasRemaining())
+				pos += channel.write(b, pos);
+		} catch (IOException e) {
+			used.clear(start, start + needed);
+			throw e;
+		}
+
+		if (waiting.get(index)) {
+			used.clear(waitingStart[index], waitingStart[index] + sectors(waitingLength[index])); // never made it into the header
+		} else {
+			int old = header.getInt(index * ENTRY);
+			if (old != 0)
+				released.set(old, old + sectors(header.getInt(index * ENTRY + 4)));
+		}
+		waiting.set(index);
+		waitingStart[index] = start;
+		waitingLength[index] = length;
+	}
+
+	// first run of free sectors that's long enough, possibly past the end of the file
+	private int allocate(int sectors) {
+		int start = used.nextClearBit(HEADER_SECTORS);
+		while (true) {
+			int end = used.nextSetBit(start);
+			if (end < 0 || end - start >= sectors)
+				break;
+			start = used.nextClearBit(end);
+		}
+		used.set(start, start + sectors);
+		return start;
+	}
+
+	private void clear(int index) {
+		header.putInt(index * ENTRY, 0);
+		header.putInt(index * ENTRY + 4, 0);
+	}
+
+	private static int sectors(int length) {
+		return (length + SECTOR - 1) / SECTOR;
+	}
+
+	// the payloads, then the header pointing at them, then the old sectors can be reused
+	public synchronized void flush() throws IOException {
+		channel.force(true);
+		for (int i = waiting.nextSetBit(0); i >= 0; i = waiting.nextSetBit(i + 1)) {
+			header.putInt(i * ENTRY, waitingStart[i]);
+			header.putInt(i * ENTRY + 4, waitingLength[i]);
+		}
+		header.force();
+		waiting.clear();
+		used.andNot(released);
+		released.clear();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+}
@@ -0,0 +1,224 @@
+package com.ch.voxel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.ch.LongHashMap;
+
+/*
+ * saved chunks of one world, a directory of RegionFiles named after their region coordinates.
+ * a payload is the chunk's BlockStorage deflated. regions are opened on first use and kept open.
+ * safe to use from the loader threads and the main thread at once.
+ *
+ * save() only copies the chunk's blocks on the calling thread, deflating and writing them is left
+ * to a single writer thread, in order. until they're written the copy is served to load() from memory.
+ * with a journal set, a payload is only written once every edit logged before save() is
+ * durable, so the regions never get ahead of the journal.
+ * a write that fails is kept in memory and tried again by the next flush, which fails itself
+ * as long as anything is still unwritten.
+ */
+public class RegionStore implements Closeable {
+
+	private static final int FORMAT = 1; // first int of every payload
+
+	private final Path dir;
+	private final LongHashMap<RegionFile> regions = new LongHashMap<>();
+	
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "region-writer");
+		t.setDaemon(true);
+		return t;
+	});
+	private final ConcurrentHashMap<Long, BlockStorage> unwritten = new ConcurrentHashMap<>();
+	private final HashMap<Long, Long> failed = new HashMap<>(); // writer thread only, chunk key to journal sequence
+	private volatile EditJournal journal;
+
+	public RegionStore(Path dir) {
+		this.dir = dir;
+	}
+	
+	public void setJournal(EditJournal journal) {
+		this.journal = journal;
+	}
+
+	// the saved blocks of the chunk or null if it was never saved
+	public BlockStorage load(int cx, int cy, int cz) throws IOException {
+		BlockStorage blocks = unwritten.get(Chunk.key(cx, cy, cz));
+		if (blocks != null)
+			return blocks.copy(); // the queued copy is still read by the writer
+		RegionFile r = region(cx, cy, cz, false);
+		byte[] data = r == null ? null : r.read(RegionFile.index(cx, cy, cz));
+		return data == null ? null : decode(data);
+	}
+	
+	// a payload, the storage deflated behind a format int
+	static byte[] encode(BlockStorage blocks) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater, 8192), 8192))) {
+			out.writeInt(FORMAT);
+			blocks.write(out);
+		} finally {
+			deflater.end();
+		}
+		return bytes.toByteArray();
+	}
+	
+	static BlockStorage decode(byte[] data) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data)), 8192))) {
+			int format = in.readInt();
+			if (format != FORMAT)
+				throw new IOException("unknown chunk format " + format);
+			return BlockStorage.read(in);
+		}
+	}
+
+	public void save(Chunk c) {
+		final BlockStorage blocks = c.getStorage().copy();
+		final Long key = c.key();
+		final EditJournal j = journal;
+		final long sequence = j == null ? 0 : j.getAppended();
+		unwritten.put(key, blocks);
+		c.setModified(false);
+		writer.execute(() -> write(key, blocks, sequence));
+	}
+	
+	// writer thread, true if the blocks made it into the region
+	private boolean write(Long key, BlockStorage blocks, long sequence) {
+		int cx = Chunk.keyX(key), cy = Chunk.keyY(key), cz = Chunk.keyZ(key);
+		try {
+			EditJournal j = journal;
+			if (j != null)
+				j.awaitDurable(sequence);
+			byte[] data = encode(blocks);
+			region(cx, cy, cz, true).write(RegionFile.index(cx, cy, cz), data, data.length);
+			unwritten.remove(key, blocks); // unless a newer save is queued
+			failed.remove(key);
+			return true;
+		} catch (IOException | RuntimeException e) {
+			e.printStackTrace(); // stays in memory, the journal still has the edits
+			failed.put(key, sequence);
+			return false;
+		}
+	}
+	
+	// writer thread, tries the failed writes once more and throws if any still fails
+	private void retryFailed() throws IOException {
+		for (Long key : new ArrayList<>(failed.keySet())) {
+			BlockStorage blocks = unwritten.get(key);
+			if (blocks == null)
+				failed.remove(key);
+			else
+				write(key, blocks, failed.get(key));
+		}
+		if (!failed.isEmpty())
+			throw new IOException(failed.size() + " chunks couldn't be written");
+	}
+
+	private RegionFile region(int cx, int cy, int cz, boolean create) throws IOException {
+		int rx = Math.floorDiv(cx, RegionFile.SIZE), ry = Math.floorDiv(cy, RegionFile.SIZE), rz = Math.floorDiv(cz, RegionFile.SIZE);
+		long key = Chunk.key(rx, ry, rz);
+		RegionFile r = regions.get(key);
+		if (r != null)
+			return r;
+		synchronized (this) { // one writer for the map
+			r = regions.get(key);
+			if (r == null) {
+				Path file = dir.resolve("r." + rx + "." + ry + "." + rz + ".bin");
+				if (!create && !Files.exists(file))
+					return null;
+				Files.createDirectories(dir);
+				r = new RegionFile(file);
+				regions.put(key, r);
+			}
+			return r;
+		}
+	}
+
+	// blocks until every save so far is written and on disk, throws if one of them couldn't be
+	public void flush() throws IOException {
+		try {
+			writer.submit(() -> {
+				retryFailed();
+				forceAll();
+				return null;
+			}).get();
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+	}
+	
+	// calls then on the writer thread once every save so far is written and on disk, with false if one of them couldn't be
+	public void flushThen(Consumer<Boolean> then) {
+		writer.execute(() -> {
+			boolean written = false;
+			try {
+				retryFailed();
+				forceAll();
+				written = true;
+			} catch (IOException | RuntimeException e) {
+				e.printStackTrace();
+			}
+			then.accept(written);
+		});
+	}
+	
+	private synchronized void forceAll() throws IOException {
+		IOException[] error = new IOException[1];
+		regions.forEach(r -> {
+			try {
+				r.flush();
+			} catch (IOException e) {
+				error[0] = e;
+			}
+		});
+		if (error[0] != null)
+			throw error[0];
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			writer.shutdown();
+			closeAll();
+		}
+	}
+	
+	private synchronized void closeAll() throws IOException {
+		IOException[] error = new IOException[1];
+		regions.forEach(r -> {
+			try {
+				r.close();
+			} catch (IOException e) {
+				error[0] = e;
+			}
+		});
+		regions.clear();
+		if (error[0] != null)
+			throw error[0];
+	}
+
+}
@@ -0,0 +1,39 @@
+package com.ch.voxel;
+
+import java.util.concurrent.RecursiveAction;
+
+import com.ch.MeshBuilder;
+
+/*
+ * meshes a range of a chunk's sections, splitting in halves down to single sections.
+ * every section ends up in its own array of packed vertices so they can be concatenated in order.
+ */
+class SectionMeshTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final Chunk chunk;
+	private final int from, to;
+	private final byte[][] out;
+	
+	SectionMeshTask(Chunk chunk, int from, int to, byte[][] out) {
+		this.chunk = chunk;
+		this.from = from;
+		this.to = to;
+		this.out = out;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from > 1) {
+			int mid = (from + to) >>> 1;
+			invokeAll(new SectionMeshTask(chunk, from, mid, out), new SectionMeshTask(chunk, mid, to, out));
+			return;
+		}
+		final int S = Chunk.SECTIONS;
+		MeshBuilder builder = MeshBuilder.get();
+		Chunk.MESHER.mesh(chunk, from % S, from / S % S, from / (S * S), builder);
+		out[from] = builder.toByteArray();
+	}
+
+}
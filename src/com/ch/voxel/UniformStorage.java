@@ -0,0 +1,63 @@
+package com.ch.voxel;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*
+ * a chunk filled with a single block id. takes no voxel memory and turns into
+ * a full storage on the first write of a different id.
+ */
+public class UniformStorage extends BlockStorage {
+	
+	public static final UniformStorage AIR = new UniformStorage(Block.AIR);
+	
+	private final short id;
+	
+	private UniformStorage(short id) {
+		this.id = id;
+	}
+	
+	public static UniformStorage of(short id) {
+		return id == Block.AIR ? AIR : new UniformStorage(id);
+	}
+	
+	@Override
+	public short get(int index) {
+		return id;
+	}
+
+	@Override
+	public BlockStorage set(int index, short id) {
+		if (id == this.id)
+			return this;
+		BlockStorage s = Chunk.PALETTE_STORAGE ? new PalettedStorage(this.id) : new ArrayStorage(this.id);
+		return s.set(index, id);
+	}
+	
+	@Override
+	public long getSolidRow(int index) {
+		return Block.isSolid(id) ? -1L : 0;
+	}
+	
+	@Override
+	public boolean isUniform() {
+		return true;
+	}
+
+	@Override
+	public BlockStorage copy() {
+		return this; // never changes
+	}
+
+	@Override
+	public int getMemoryUsage() {
+		return 0;
+	}
+	
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeByte(UNIFORM);
+		out.writeShort(id);
+	}
+
+}
@@ -1,239 +1,579 @@
 package com.ch.voxel;
 
 import java.awt.Color;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 import com.ch.Camera;
+import com.ch.LongHashMap;
+import com.ch.Model;
 import com.ch.Shader;
+import com.ch.SimplexNoise;
+import com.ch.voxel.gen.Pipeline;
 
 
+/*
+ * the loaded chunks are kept in a map keyed by their packed coordinates (Chunk.key), so the
+ * world has no bounds. chunks within the render distance of the camera are loaded, a cylinder
+ * of radius distance around it and height 2 * vertical + 1. when the camera moves only the
+ * chunks that left it are dropped, whatever the direction, and the rest is built nearest first.
+ * the map can be read from other threads while the main thread loads and unloads.
+ * dropped chunks go to a ChunkCache, so coming back to them skips the generator.
+ */
 public class World {
 
 	private int x, y, z; // in chunks
-			// private int cunk_max;
-	private Chunk[][][] chunks; // TODO: unwrap
-	private int W = 4, H = 2, D = 4;
+	private int px, py, pz; // chunk the camera is heading for
+	private int[] path = new int[3]; // chunks from the camera to px, py, pz, the view around each is loaded
+	private Prefetcher prefetcher = new Prefetcher();
+	private LongHashMap<Chunk> chunks;
+	private int distance = 2, vertical = 1; // in chunks
+	
+	// chunks are built by the loader and installed by update() within these per frame budgets
+	public static long UPLOAD_BUDGET_NANOS = 4_000_000;
+	public static int UPLOAD_BUDGET_BYTES = 4 << 20;
+	
+	private final RegionStore store;
+	private EditJournal journal;
+	private final Pipeline pipeline; // what chunks that were never saved are generated by
+	private ChunkLoader loader;
+	
+	// the journal is folded into the regions once its segment grows past this
+	public static long COMPACT_BYTES = 4 << 20;
+	private volatile boolean compacting;
+	private LongHashMap<Boolean> pending = new LongHashMap<>(); // requested and not installed yet
+	private List<Chunk> stale = new ArrayList<>(); // reused by remesh
+	
+	// chunks that failed to load or generate are asked for again after this, doubling every time they fail again
+	public static long RETRY_NANOS = 1_000_000_000L;
+	private static final int RETRY_DOUBLINGS = 5;
+	private LongHashMap<long[]> failed = new LongHashMap<>(); // key, times failed, when to retry
+	
+	public static long CACHE_BUDGET = 64 << 20; // bytes of blocks kept for chunks out of view
+	private ChunkCache cache = new ChunkCache(CACHE_BUDGET);
+	
+	private static final String GENERATOR = "generator.properties"; // next to the regions
 
 	public World() {
+		this(Paths.get("world"));
+	}
+	
+	/*
+	 * opens the world in dir with the generator it records. a new world gets the standard one,
+	 * a world saved before generators were recorded keeps the legacy one it was made with.
+	 */
+	public World(Path dir) {
+		this(dir, generator(dir));
+	}
+	
+	public World(Pipeline pipeline) {
+		this(Paths.get("world"), pipeline);
+	}
+	
+	// the pipeline has to be the one the world records, otherwise new chunks wouldn't fit the saved ones
+	public World(Path dir, Pipeline pipeline) {
+		this.pipeline = pipeline;
+		record(dir, pipeline);
+		store = new RegionStore(dir.resolve("region"));
+		journal = new EditJournal(dir);
+		loader = new ChunkLoader(store, pipeline);
 		x = 0;
 		y = 0;
 		z = 0;
-		chunks = new Chunk[W][H][D];
-		gen();
+		chunks = new LongHashMap<>();
+		recover();
+		try {
+			journal.open();
+			store.setJournal(journal);
+		} catch (IOException e) {
+			e.printStackTrace(); // edits won't be journaled
+			journal = null;
+		}
+		recycle();
+	}
+	
+	private static Pipeline generator(Path dir) {
+		Properties p = readGenerator(dir);
+		if (p != null)
+			return Pipeline.byName(p.getProperty("generator", ""), noise(p.getProperty("seed", "")));
+		return saved(dir) ? Pipeline.legacy(SimplexNoise.DEFAULT) : Pipeline.standard(SimplexNoise.DEFAULT);
+	}
+	
+	/*
+	 * writes down what the world is generated with or checks the pipeline against what's written down.
+	 * a world saved before that can only go on with what it was made with, the legacy generator sampling every block.
+	 */
+	private static void record(Path dir, Pipeline pipeline) {
+		Properties want = describe(pipeline);
+		Properties p = readGenerator(dir);
+		boolean recorded = p != null;
+		if (!recorded && saved(dir)) {
+			p = new Properties();
+			p.setProperty("generator", "legacy");
+			p.setProperty("seed", seed(SimplexNoise.DEFAULT));
+			p.setProperty("density.spacing", "1");
+		}
+		if (p != null && !p.equals(want))
+			throw new IllegalArgumentException(dir + " was generated with " + new TreeMap<>(p) + ", not " + new TreeMap<>(want));
+		if (recorded)
+			return;
+		try {
+			Files.createDirectories(dir);
+			try (Writer w = Files.newBufferedWriter(dir.resolve(GENERATOR))) {
+				want.store(w, "what the chunks of this world that were never saved are generated by");
+			}
+		} catch (IOException e) {
+			e.printStackTrace(); // written the next time
+		}
+	}
+	
+	// generator, seed and the parameters of its stages
+	private static Properties describe(Pipeline pipeline) {
+		Properties p = new Properties();
+		p.setProperty("generator", pipeline.getName());
+		p.setProperty("seed", seed(pipeline.getNoise()));
+		p.putAll(pipeline.getParameters());
+		return p;
+	}
+	
+	// anything in the dir, regions or journal segments
+	private static boolean saved(Path dir) {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.findAny().isPresent();
+		} catch (NoSuchFileException e) {
+			return false;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	// null if the world doesn't record its generator
+	private static Properties readGenerator(Path dir) {
+		try (Reader r = Files.newBufferedReader(dir.resolve(GENERATOR))) {
+			Properties p = new Properties();
+			p.load(r);
+			return p;
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static String seed(SimplexNoise noise) {
+		return noise == SimplexNoise.DEFAULT ? "default" : Long.toString(noise.getSeed());
+	}
+	
+	private static SimplexNoise noise(String seed) {
+		return seed.equals("default") ? SimplexNoise.DEFAULT : new SimplexNoise(Long.parseLong(seed));
+	}
+	
+	/*
+	 * applies the edits left in the journal by the last run over the saved or generated chunks,
+	 * writes those to the regions and drops the journal once they're on disk.
+	 */
+	private void recover() {
+		try {
+			List<Path> segments = journal.segments();
+			if (segments.isEmpty())
+				return;
+			LongHashMap<Chunk> touched = new LongHashMap<>();
+			for (Path p : segments) {
+				EditJournal.replay(p, (key, index, id) -> {
+					Chunk c = touched.get(key);
+					if (c == null) {
+						c = ChunkLoader.load(store, pipeline, Chunk.keyX(key), Chunk.keyY(key), Chunk.keyZ(key));
+						touched.put(key, c);
+					}
+					c.setBlock(index, id);
+				});
+			}
+			touched.forEach(this::save);
+			store.flush(); // the segments stay for the next try if a write fails
+			for (Path p : segments)
+				journal.delete(p);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
-	private void gen() {
-		for (int i = 0; i < W; i++)
-			for (int j = 0; j < H; j++)
-				for (int k = 0; k < D; k++) {
-					chunks[i][j][k] = new Chunk(i - W / 2 + x, j - H / 2 + y, k - D / 2 + z);
-					chunks[i][j][k].updateBlocks();
-					chunks[i][j][k].toGenModel();
+	/*
+	 * folds the journal into the regions in the background. the journal's flusher seals the
+	 * segment, on the frame after that the loaded chunks it touched are saved (evicted ones were saved on the way out) and the segment is
+	 * deleted once those writes are on disk. the saves only copy blocks here, the writer deflates them.
+	 * if a write fails the segment stays and goes with the next compaction that gets everything out.
+	 * on disk means the store's flush went through: every region forced its new payloads and then
+	 * the header pointing at them (see RegionFile), so no crash after the delete can tear a chunk
+	 * the segment was the only other copy of.
+	 */
+	private void compact() {
+		if (journal == null)
+			return;
+		Path sealed = journal.takeSealed();
+		if (sealed != null) {
+			chunks.forEach(this::save); // every edit the sealed segment holds is in these by now
+			store.flushThen(written -> {
+				try {
+					if (written)
+						journal.deleteThrough(sealed);
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
+				compacting = false;
+			});
+		} else if (!compacting && journal.getSize() >= COMPACT_BYTES) {
+			compacting = true;
+			journal.requestRotate();
+		}
 	}
-
-	public void updatePos(float x, float y, float z) {
-		final int _x = (int) (x / Chunk.CHUNK_SIZE);
-		final int _y = 0;//(int) (y / Chunk.CHUNK_SIZE);
-		final int _z = (int) (z / Chunk.CHUNK_SIZE);
-
-		if (this.x == _x && this.y == _y && this.z == _z) { // short circuit
-															// check for any
-															// change
-			//System.out.println("hello");
+	
+	public void setRenderDistance(int distance, int vertical) {
+		if (this.distance == distance && this.vertical == vertical)
 			return;
+		this.distance = Math.max(0, distance);
+		this.vertical = Math.max(0, vertical);
+		recycle();
+	}
+	
+	public int getRenderDistance() {
+		return distance;
+	}
+	
+	public int getVerticalDistance() {
+		return vertical;
+	}
+	
+	private boolean inView(int cx, int cy, int cz) {
+		return inView(cx, cy, cz, x, y, z);
+	}
+	
+	private boolean inView(int cx, int cy, int cz, int ox, int oy, int oz) {
+		int dx = cx - ox, dy = cy - oy, dz = cz - oz;
+		return dx * dx + dz * dz <= distance * distance && Math.abs(dy) <= vertical;
+	}
+	
+	// in view now or on the way to where the camera is heading
+	private boolean wanted(int cx, int cy, int cz) {
+		for (int i = 0; i < path.length; i += 3)
+			if (inView(cx, cy, cz, path[i], path[i + 1], path[i + 2]))
+				return true;
+		return false;
+	}
+	
+	// the camera chunk, px, py, pz and the chunks in between, one step per chunk along the longest axis
+	private void updatePath() {
+		int steps = Math.max(Math.abs(px - x), Math.max(Math.abs(py - y), Math.abs(pz - z)));
+		path = new int[(steps + 1) * 3];
+		for (int i = 0; i <= steps; i++) {
+			float t = steps == 0 ? 0 : i / (float) steps;
+			path[i * 3]     = Math.round(x + (px - x) * t);
+			path[i * 3 + 1] = Math.round(y + (py - y) * t);
+			path[i * 3 + 2] = Math.round(z + (pz - z) * t);
+		}
+	}
+	
+	/*
+	 * drops the chunks that left the view and requests whatever is missing. all of them are
+	 * unloaded before any gets unlinked, so the ones going away don't remesh their borders for nothing.
+	 */
+	private void recycle() {
+		List<Chunk> dropped = new ArrayList<>();
+		chunks.forEach(c -> {
+			if (!wanted(c.x, c.y, c.z))
+				dropped.add(c);
+		});
+		for (Chunk c : dropped)
+			c.unload();
+		for (Chunk c : dropped) {
+			c.unlink();
+			c.dispose();
+			chunks.remove(c.key());
+			save(c);
+			cache.put(c, x, y, z);
 		}
 		
-		int wx = this.x;
-		int wy = this.y;
-		int wz = this.z;
-		
-//		class internal_chunk_thread extends Thread {
-//			
-//		private int  wx, wy, wz;
-//		
-//		void set(int x, int y, int z) {
-//			this.wx = x;
-//			this.wy = y;
-//			this.wz = z;
-//		}
-//			
-//		public void run() {
+		// queued requests that left the view are dropped, the loader sorts the rest around the camera
+		for (ChunkLoader.Request r : loader.recenter(x, y, z, r -> wanted(r.x, r.y, r.z))) {
+			pending.remove(r.key());
+			if (r.chunk != null)
+				cache.put(r.chunk, x, y, z);
+			else if (r.payload != null)
+				cache.putCold(r.key(), r.payload, x, y, z);
+		}
+		for (int i = 0; i < path.length; i += 3)
+			requestView(path[i], path[i + 1], path[i + 2]); // the loader takes the ones nearest the camera first
+	}
+	
+	private void requestView(int ox, int oy, int oz) {
+		for (int dz = -distance; dz <= distance; dz++)
+			for (int dy = -vertical; dy <= vertical; dy++)
+				for (int dx = -distance; dx <= distance; dx++)
+					if (inView(ox + dx, oy + dy, oz + dz, ox, oy, oz) && getChunk(ox + dx, oy + dy, oz + dz) == null)
+						request(ox + dx, oy + dy, oz + dz); // drawn once it's ready
+	}
+	
+	private void request(int cx, int cy, int cz) {
+		long key = Chunk.key(cx, cy, cz);
+		if (pending.put(key, Boolean.TRUE) != null)
+			return;
+		Chunk c = cache.takeWarm(key);
+		if (c != null) {
+			loader.request(c);
+			return;
+		}
+		byte[] data = cache.takeCold(key);
+		if (data != null)
+			loader.request(cx, cy, cz, data);
+		else
+			loader.request(cx, cy, cz);
+	}
+	
+	/*
+	 * installs the chunks the loader finished since the last frame, uploading their meshes until
+	 * the time or byte budget runs out. the rest wait for the next frame.
+	 * chunks that left the view while being built go straight to the cache, which takes in what it compressed meanwhile.
+	 */
+	public void update() {
+		compact();
+		cache.update(x, y, z);
+		long start = System.nanoTime();
+		int bytes = 0;
+		retry(start);
+		Chunk c;
+		while (bytes < UPLOAD_BUDGET_BYTES && System.nanoTime() - start < UPLOAD_BUDGET_NANOS && (c = loader.poll()) != null) {
+			if (accept(c)) {
+				bytes += c.getPendingUploadSize();
+				c.updateModel();
+			}
+		}
+		remesh(start);
+	}
+	
+	/*
+	 * chunks whose model fell behind, mostly the neighbours of chunks that came or went and edited
+	 * chunks, remesh here with what's left of the time budget, nearest first. the nearest always
+	 * does so edits show up while the loader keeps the budget busy. render only draws.
+	 */
+	private void remesh(long start) {
+		chunks.forEach(c -> {
+			if (c.isModelStale())
+				stale.add(c);
+		});
+		if (stale.isEmpty())
+			return;
+		stale.sort(Comparator.comparingInt(c -> (c.x - x) * (c.x - x) + (c.y - y) * (c.y - y) + (c.z - z) * (c.z - z)));
+		stale.get(0).updateModel();
+		for (int i = 1; i < stale.size() && System.nanoTime() - start < UPLOAD_BUDGET_NANOS; i++)
+			stale.get(i).updateModel();
+		stale.clear();
+	}
+	
+	/*
+	 * a chunk the loader couldn't load or generate is left out until its backoff runs out, then
+	 * asked for again if it's still wanted. the camera doesn't have to move for it.
+	 */
+	private void retry(long now) {
+		Long key;
+		while ((key = loader.pollFailed()) != null) {
+			pending.remove(key);
+			long[] f = failed.get(key);
+			if (f == null)
+				failed.put(key, f = new long[] { key, 0, 0 });
+			f[2] = now + (RETRY_NANOS << Math.min(f[1]++, RETRY_DOUBLINGS));
+		}
+		if (failed.isEmpty())
+			return;
+		List<long[]> due = new ArrayList<>();
+		failed.forEach(f -> {
+			if (now - f[2] >= 0)
+				due.add(f);
+		});
+		for (long[] f : due) {
+			int cx = Chunk.keyX(f[0]), cy = Chunk.keyY(f[0]), cz = Chunk.keyZ(f[0]);
+			if (!wanted(cx, cy, cz) || getChunk(cx, cy, cz) != null)
+				failed.remove(f[0]);
+			else
+				request(cx, cy, cz); // stays in failed until it's installed, so the next failure waits longer
+		}
+	}
+	
+	// next chunk the loader finished or null
+	Chunk pollBuilt() {
+		return loader.poll();
+	}
+	
+	// takes a chunk from the loader, installs it or caches it if it left the view. true if it was installed
+	boolean accept(Chunk c) {
+		pending.remove(c.key());
+		failed.remove(c.key());
+		if (install(c))
+			return true;
+		if (!chunks.containsKey(c.key())) {
+			c.dispose();
+			cache.put(c, x, y, z);
+		}
+		return false;
+	}
+	
+	// chunks requested and not accepted yet
+	int getPendingCount() {
+		return pending.size();
+	}
+	
+	// adds a built chunk and links it with the loaded chunks around it
+	boolean install(Chunk c) {
+		if (!wanted(c.x, c.y, c.z) || chunks.containsKey(c.key()))
+			return false;
+		chunks.put(c.key(), c);
+		c.link(Block.LT, getChunk(c.x - 1, c.y, c.z));
+		c.link(Block.RT, getChunk(c.x + 1, c.y, c.z));
+		c.link(Block.BT, getChunk(c.x, c.y - 1, c.z));
+		c.link(Block.TP, getChunk(c.x, c.y + 1, c.z));
+		c.link(Block.FT, getChunk(c.x, c.y, c.z - 1));
+		c.link(Block.BK, getChunk(c.x, c.y, c.z + 1));
+		return true;
+	}
 
-		/*
-		 * all logic is unwrapped because its more efficient.. while its a pain
-		 * to code and read.. tradeoff taken :D
-		 */
+	// call every frame, the prefetcher needs the motion between frames
+	public void updatePos(float x, float y, float z) {
+		prefetcher.update(x, y, z, System.nanoTime());
+		final int _x = toChunk(x);
+		final int _y = toChunk(y);
+		final int _z = toChunk(z);
+		final int _px = toChunk(prefetcher.getPredictedX());
+		final int _py = toChunk(prefetcher.getPredictedY());
+		final int _pz = toChunk(prefetcher.getPredictedZ());
 
-		/* dont think these cases occure
-		if (this.x != _x && this.y != _y && this.z != _z) {
-			if (this.x < _x) {
-				if (this.y < _y) {
-					if (this.z < _z) {
-						
-					} else {
-						
-					}
-				} else {
-					if (this.z < _z) {
-						
-					} else {
-						
-					}
-				}
-			} else {
-				if (this.y < _y) {
-					if (this.z < _z) {
-						
-					} else {
-						
-					}
-				} else {
-					if (this.z < _z) {
-						
-					} else {
-						
+		boolean moved = this.x != _x || this.y != _y || this.z != _z;
+		if (!moved && px == _px && py == _py && pz == _pz) // short circuit check for any change
+			return;
+		
+		if (moved) {
+			// were the chunks coming into view there in time
+			for (int dz = -distance; dz <= distance; dz++)
+				for (int dy = -vertical; dy <= vertical; dy++)
+					for (int dx = -distance; dx <= distance; dx++) {
+						int cx = _x + dx, cy = _y + dy, cz = _z + dz;
+						if (inView(cx, cy, cz, _x, _y, _z) && !inView(cx, cy, cz))
+							prefetcher.entered(getChunk(cx, cy, cz) != null);
 					}
-				}
-			}
-		} else if (this.x != _x && this.y != _y) {
-			if (this.x < _x) {
-				if (this.y < _y) {
-					
-				} else {
-					
-				}
-			} else {
-				if (this.y < _y) {
-					
-				} else {
-					
-				}
-			}
-		} else if (this.x != _x && this.z != _z) {
-			if (this.x < _x) {
-				if (this.z < _z) {
-					
-				} else {
-					
-				}
-			} else {
-				if (this.z < _z) {
-					
-				} else {
-					
-				}
-			}
-		} else if (this.y != _y && this.z != _z) {
-			if (this.y < _y) {
-				if (this.z < _z) {
-					
-				} else {
-					
-				}
-			} else {
-				if (this.z < _z) {
-					
-				} else {
-					
-				}
-			}
-		} else 
-		*/
-		if (wx != _x) {
-			if (wx < _x) {
-				
-			} else {
-				
-			}
-		} else if (wy != _y) {
-			if (wy < _y) {
-				
-			} else {
-				
-			}
-		} else if (wz != _z) {
-			if (wz < _z) {
-				int dif = _z - wz;
-				if (dif > D) {
-					wx = _x;
-					wy = _y;
-					wz = _z;
-					gen();
-					return;
-				} else {
-					Chunk[][][] n_chunks = new Chunk[W][H][D];
-					for (int i = 0; i < W; i++)
-						for (int j = 0; j < H; j++)
-							for (int k = 0; k < D - 1; k++) {
-								n_chunks[i][j][k] = chunks[i][j][k + 1];
-							}
-					for (int i = 0; i < W; i++)
-						for (int j = 0; j < H; j++) {
-							n_chunks[i][j][D - 1] = new Chunk(i - W / 2 + _x, j - H / 2 + _y, (D - 1) - D / 2 + _z);
-							n_chunks[i][j][D - 1].updateBlocks();
-							n_chunks[i][j][D - 1].toGenModel();
-						}
-					World.this.chunks = n_chunks;
-				}
-			} else {
-				int dif = wz - _z;
-				if (dif > D) {
-					wx = _x;
-					wy = _y;
-					wz = _z;
-					gen();
-					return;
-				} else {
-					Chunk[][][] n_chunks = new Chunk[W][H][D];
-					for (int i = 0; i < W; i++)
-						for (int j = 0; j < H; j++)
-							for (int k = 1; k < D; k++) {
-								n_chunks[i][j][k] = chunks[i][j][k - 1];
-							}
-					for (int i = 0; i < W; i++)
-						for (int j = 0; j < H; j++) {
-							n_chunks[i][j][0] = new Chunk(i - W / 2 + _x, j - H / 2 + _y, 0 - D / 2 + _z);
-							n_chunks[i][j][0].updateBlocks();
-							n_chunks[i][j][0].toGenModel();
-						}
-					World.this.chunks = n_chunks;
-				}
-			}
 		}
-//		
-//		}
-//		
-//		};
-//		internal_chunk_thread t = new internal_chunk_thread();
-//		t.set(this.x, this.y, this.z);
-//		t.start();
 		
 		this.x = _x;
 		this.y = _y;
 		this.z = _z;
-		
-		/* welp... this logic sure looks aweful */
+		px = _px;
+		py = _py;
+		pz = _pz;
+		updatePath();
+		recycle();
+	}
+	
+	private static int toChunk(float v) {
+		return Math.floorDiv((int) Math.floor(v), Chunk.CHUNK_SIZE);
+	}
+	
+	public Prefetcher getPrefetcher() {
+		return prefetcher;
+	}
+	
+	public ChunkCache getCache() {
+		return cache;
+	}
+	
+	// what new chunks are generated by, its toString has the time per stage
+	public Pipeline getPipeline() {
+		return pipeline;
+	}
+
+	private void save(Chunk c) {
+		if (c.isModified())
+			store.save(c);
+	}
+	
+	// writes every modified chunk, closes the region files and drops the journal once they're written
+	public void close() {
+		loader.shutdown();
+		boolean written = false;
+		try {
+			chunks.forEach(this::save);
+			store.flush();
+			written = true;
+		} catch (IOException e) {
+			e.printStackTrace(); // the journal stays and is replayed on the next start
+		}
+		try {
+			if (journal != null) {
+				journal.close();
+				if (written)
+					for (Path p : journal.segments())
+						journal.delete(p);
+			}
+			store.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	// null if the chunk isn't loaded
+	public Chunk getChunk(int cx, int cy, int cz) {
+		return chunks.get(Chunk.key(cx, cy, cz));
+	}
+	
+	// chunk holding the block at world coordinates
+	public Chunk getChunkAt(int wx, int wy, int wz) {
+		return getChunk(Math.floorDiv(wx, Chunk.CHUNK_SIZE), Math.floorDiv(wy, Chunk.CHUNK_SIZE), Math.floorDiv(wz, Chunk.CHUNK_SIZE));
+	}
+	
+	public int getLoadedCount() {
+		return chunks.size();
+	}
+	
+	public short getBlock(int wx, int wy, int wz) {
+		Chunk c = getChunkAt(wx, wy, wz);
+		return c == null ? Block.AIR : c.getBlock(Math.floorMod(wx, Chunk.CHUNK_SIZE), Math.floorMod(wy, Chunk.CHUNK_SIZE), Math.floorMod(wz, Chunk.CHUNK_SIZE));
+	}
+	
+	// edits outside the loaded chunks are dropped
+	public void setBlock(int wx, int wy, int wz, short id) {
+		Chunk c = getChunkAt(wx, wy, wz);
+		if (c == null)
+			return;
+		int x = Math.floorMod(wx, Chunk.CHUNK_SIZE), y = Math.floorMod(wy, Chunk.CHUNK_SIZE), z = Math.floorMod(wz, Chunk.CHUNK_SIZE);
+		if (c.getBlock(x, y, z) == id)
+			return;
+		c.setBlock(x, y, z, id);
+		if (journal != null)
+			journal.append(c.key(), Chunk.index(x, y, z), id);
 	}
 
 	public void render(Shader s, Camera c) {
-		for (int i = 0; i < W; i++)
-			for (int j = 0; j < H; j++)
-				for (int k = 0; k < D; k++) {
-					Chunk ch = chunks[i][j][k];
-					if (ch != null) { // just in case for now although i dont suspect it will ever be
-	//					float r = (W - i) / (float) W;
-	//					float g = j / (float) H;
-	//					float b = k / (float) D;
-						Color cl = new Color(("" + ch.x + ch.y + ch.z + (ch.x * ch.z) + (ch.y * ch.y)).hashCode());
-						
-						float r = cl.getRed() / 255f;
-						float g = cl.getGreen() / 255f;
-						float b = cl.getBlue() / 255f;
-						s.uniformf("color", r, g, b);
-						s.unifromMat4("MVP", (c.getViewProjection().mul(ch.getModelMatrix())));
-						ch.getModel().draw();
-					}
-				}
+		chunks.forEach(ch -> {
+			if (!ch.isEmpty()) { // all air, nothing to draw
+				Color cl = new Color(("" + ch.x + ch.y + ch.z + (ch.x * ch.z) + (ch.y * ch.y)).hashCode());
+				
+				float r = cl.getRed() / 255f;
+				float g = cl.getGreen() / 255f;
+				float b = cl.getBlue() / 255f;
+				s.uniformf("color", r, g, b);
+				s.unifromMat4("MVP", (c.getViewProjection().mul(ch.getModelMatrix())));
+				Model m = ch.getModel();
+				if (m != null)
+					m.draw();
+			}
+		});
 	}
 
 	// public
@@ -0,0 +1,64 @@
+package com.ch.voxel.gen;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.ch.voxel.Block;
+import com.ch.voxel.Chunk;
+
+/*
+ * caves. two independent noise fields are sampled and the terrain is cut where both are near
+ * zero, the two thin sheets cross in winding tunnels. caves stay a few blocks under the surface
+ * so they don't open up everywhere.
+ */
+public class CarveStage implements Stage {
+
+	public static int SPACING = 2; // caves are smooth enough for a coarse lattice, see DensityStage.SPACING
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+	private static final float WIDTH = 0.08f; // of each sheet, in noise units
+	static final float COVER = 4; // blocks left above a cave
+	private static final int OFFSET = 1 << 20; // moves the second field away from the first and from the terrain
+
+	@Override
+	public String getName() {
+		return "carve";
+	}
+
+	@Override
+	public String[] getDependencies() {
+		return new String[] { "density", "column" };
+	}
+
+	@Override
+	public Map<String, String> getParameters() {
+		return Collections.singletonMap("spacing", Integer.toString(DensityStage.spacing(SPACING)));
+	}
+
+	@Override
+	public void apply(GenContext ctx) {
+		if (ctx.isEmpty())
+			return;
+		int ox = ctx.getX() * SIZE, oy = ctx.getY() * SIZE, oz = ctx.getZ() * SIZE;
+		Column c = ctx.column;
+		float top = -Float.MAX_VALUE;
+		for (float h : c.height)
+			top = Math.max(top, h);
+		if (oy >= top - COVER)
+			return; // all of it is too close to the surface
+
+		float[] a = ctx.density, b = ctx.scratch; // the density is spent by now
+		DensityStage.sample(ctx.getNoise(), a, ox + OFFSET, oy, oz, SPACING, 20f);
+		DensityStage.sample(ctx.getNoise(), b, ox, oy + OFFSET, oz - OFFSET, SPACING, 20f);
+		for (int z = 0; z < SIZE; z++) {
+			for (int y = 0; y < SIZE; y++) {
+				int o = Chunk.index(0, y, z);
+				for (int x = 0; x < SIZE; x++) {
+					int i = o + x;
+					if (Math.abs(a[i]) < WIDTH && Math.abs(b[i]) < WIDTH && oy + y < c.height[Column.index(x, z)] - COVER && ctx.get(i) != Block.AIR)
+						ctx.set(i, Block.AIR);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.ch.voxel.gen;
+
+import com.ch.voxel.Chunk;
+
+/*
+ * the 2d fields of one column of chunks, shared by every chunk in it.
+ * indexed x + z * CHUNK_SIZE.
+ */
+public class Column {
+
+	public static final byte PLAINS = 0, HILLS = 1, FOREST = 2;
+
+	public final int x, z; // in chunks
+	public final float[] height = new float[Chunk.CHUNK_SIZE * Chunk.CHUNK_SIZE]; // surface, in blocks
+	public final float[] roughness = new float[Chunk.CHUNK_SIZE * Chunk.CHUNK_SIZE]; // weight of the 3d density
+	public final byte[] biome = new byte[Chunk.CHUNK_SIZE * Chunk.CHUNK_SIZE];
+
+	public Column(int x, int z) {
+		this.x = x;
+		this.z = z;
+	}
+
+	public static int index(int x, int z) {
+		return x + z * Chunk.CHUNK_SIZE;
+	}
+
+}
@@ -0,0 +1,102 @@
+package com.ch.voxel.gen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ch.SimplexNoise;
+import com.ch.voxel.Chunk;
+
+/*
+ * the 2d fields: surface height, roughness and biome per block column. a column of chunks
+ * shares them, so they're computed once by whichever thread gets there first and the others
+ * wait on its future. past MAX_COLUMNS the columns farthest from the one just computed are dropped.
+ */
+public class ColumnStage implements Stage {
+
+	public static int MAX_COLUMNS = 512;
+
+	private final ConcurrentHashMap<Long, CompletableFuture<Column>> columns = new ConcurrentHashMap<>();
+	private final AtomicInteger hits = new AtomicInteger(), misses = new AtomicInteger();
+
+	@Override
+	public String getName() {
+		return "column";
+	}
+
+	@Override
+	public void apply(GenContext ctx) {
+		ctx.column = get(ctx.getNoise(), ctx.getX(), ctx.getZ());
+	}
+
+	public Column get(SimplexNoise noise, int cx, int cz) {
+		Long key = Chunk.key(cx, 0, cz);
+		CompletableFuture<Column> f = columns.get(key);
+		if (f == null) {
+			CompletableFuture<Column> mine = new CompletableFuture<>();
+			f = columns.putIfAbsent(key, mine);
+			if (f == null) {
+				misses.incrementAndGet();
+				try {
+					mine.complete(compute(noise, cx, cz));
+				} catch (RuntimeException e) {
+					columns.remove(key, mine);
+					mine.completeExceptionally(e);
+					throw e;
+				}
+				trim(cx, cz);
+				return mine.join();
+			}
+		}
+		hits.incrementAndGet();
+		return f.join();
+	}
+
+	private static Column compute(SimplexNoise noise, int cx, int cz) {
+		Column c = new Column(cx, cz);
+		for (int z = 0; z < Chunk.CHUNK_SIZE; z++) {
+			for (int x = 0; x < Chunk.CHUNK_SIZE; x++) {
+				double wx = cx * Chunk.CHUNK_SIZE + x, wz = cz * Chunk.CHUNK_SIZE + z;
+				double b = noise.noise(wx / 512 + 1000, wz / 512); // offset so it doesn't follow the height
+				double hills = smoothstep(0.2, 0.5, b);
+				double h = 32 * noise.noise(wx / 256, wz / 256) + 8 * noise.noise(wx / 64 + 500, wz / 64)
+						+ 48 * hills * Math.abs(noise.noise(wx / 96 - 500, wz / 96));
+				int i = Column.index(x, z);
+				c.height[i] = (float) h;
+				c.roughness[i] = (float) (0.3 + 0.7 * hills);
+				c.biome[i] = b < -0.2 ? Column.PLAINS : hills > 0.5 ? Column.HILLS : Column.FOREST;
+			}
+		}
+		return c;
+	}
+
+	private static double smoothstep(double a, double b, double v) {
+		double t = Math.min(1, Math.max(0, (v - a) / (b - a)));
+		return t * t * (3 - 2 * t);
+	}
+
+	private void trim(int cx, int cz) {
+		if (columns.size() <= MAX_COLUMNS)
+			return;
+		List<Long> keys = new ArrayList<>(columns.keySet());
+		keys.sort((a, b) -> Long.compare(distance(b, cx, cz), distance(a, cx, cz)));
+		for (int i = 0; i < keys.size() - MAX_COLUMNS * 3 / 4; i++)
+			columns.remove(keys.get(i));
+	}
+
+	private static long distance(long key, int cx, int cz) {
+		long dx = Chunk.keyX(key) - cx, dz = Chunk.keyZ(key) - cz;
+		return dx * dx + dz * dz;
+	}
+
+	public int getHits() {
+		return hits.get();
+	}
+
+	public int getMisses() {
+		return misses.get();
+	}
+
+}
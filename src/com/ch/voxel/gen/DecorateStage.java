@@ -0,0 +1,108 @@
+package com.ch.voxel.gen;
+
+import com.ch.SimplexNoise;
+import com.ch.voxel.Block;
+import com.ch.voxel.Chunk;
+
+/*
+ * trees on the surface. whether a block column gets one is a hash of its position and the seed,
+ * the block it stands on comes from the column height and the density alone, never from
+ * generated blocks. so every chunk a tree reaches into can work it out on its own: a chunk looks
+ * at the block columns a tree could reach it from and places only the blocks inside itself.
+ * a chunk generated again, or in any order with its neighbours, grows the same trees.
+ */
+public class DecorateStage implements Stage {
+
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+	private static final int TRUNK = 5;
+	private static final int REACH = 2; // leaves around the trunk
+	private static final int HEIGHT = TRUNK + 2; // blocks above the ground a tree takes up
+	private static final int SURFACE = 6; // how far above the column height the ground may be
+
+	private final ColumnStage columns; // for the block columns past the border
+
+	public DecorateStage(ColumnStage columns) {
+		this.columns = columns;
+	}
+
+	@Override
+	public String getName() {
+		return "decorate";
+	}
+
+	@Override
+	public String[] getDependencies() {
+		return new String[] { "carve", "column" };
+	}
+
+	@Override
+	public void apply(GenContext ctx) {
+		int ox = ctx.getX() * SIZE, oy = ctx.getY() * SIZE, oz = ctx.getZ() * SIZE;
+		SimplexNoise noise = ctx.getNoise();
+		long seed = noise.getSeed();
+		Column[] around = new Column[9]; // fetched when a tree needs them
+		around[4] = ctx.column;
+		for (int wz = oz - REACH; wz < oz + SIZE + REACH; wz++) {
+			for (int wx = ox - REACH; wx < ox + SIZE + REACH; wx++) {
+				int dx = Math.floorDiv(wx, SIZE) - ctx.getX(), dz = Math.floorDiv(wz, SIZE) - ctx.getZ();
+				int n = dx + 1 + (dz + 1) * 3;
+				if (around[n] == null)
+					around[n] = columns.get(noise, ctx.getX() + dx, ctx.getZ() + dz);
+				Column c = around[n];
+				int col = Column.index(Math.floorMod(wx, SIZE), Math.floorMod(wz, SIZE));
+				if ((hash(wx, wz, seed) & 0xFFFF) >= chance(c.biome[col]))
+					continue;
+				float h = c.height[col];
+				if (h + SURFACE + HEIGHT < oy || h - CarveStage.COVER >= oy + SIZE)
+					continue; // can't reach this chunk
+				int ground = ground(noise, wx, wz, h, c.roughness[col]);
+				if (ground != Integer.MIN_VALUE)
+					tree(ctx, wx, ground + 1, wz);
+			}
+		}
+	}
+
+	/*
+	 * the highest solid block of the world column if a tree can stand on it, otherwise MIN_VALUE.
+	 * it has to be near the column height, which keeps trees off cave floors and overhangs, and
+	 * above where caves are cut, so the carving never takes it away.
+	 */
+	private static int ground(SimplexNoise noise, int wx, int wz, float height, float roughness) {
+		int low = (int) Math.ceil(height - CarveStage.COVER);
+		int top = DensityStage.top(noise, wx, wz, height, roughness, low, (int) Math.ceil(height + DensityStage.FALLOFF * roughness));
+		return top >= low && top <= height + SURFACE ? top : Integer.MIN_VALUE;
+	}
+
+	// out of 65536
+	private static int chance(byte biome) {
+		switch (biome) {
+		case Column.FOREST:
+			return 65536 / 48;
+		case Column.PLAINS:
+			return 65536 / 400;
+		default:
+			return 65536 / 1000;
+		}
+	}
+
+	private static void tree(GenContext ctx, int wx, int wy, int wz) {
+		for (int i = 0; i < TRUNK; i++)
+			ctx.place(wx, wy + i, wz, Block.SOLID);
+		int top = wy + TRUNK;
+		for (int dy = -2; dy <= 1; dy++) {
+			int r = dy < 0 ? REACH : 1;
+			for (int dz = -r; dz <= r; dz++)
+				for (int dx = -r; dx <= r; dx++)
+					if (Math.abs(dx) + Math.abs(dz) < 2 * r || dy == -2) // round off the corners above the lowest layer
+						ctx.place(wx + dx, top + dy, wz + dz, Block.SOLID);
+		}
+	}
+
+	private static long hash(int x, int z, long seed) {
+		long h = seed ^ x * 0x9E3779B97F4A7C15L ^ z * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 29)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 32);
+	}
+
+}
@@ -0,0 +1,179 @@
+package com.ch.voxel.gen;
+
+import java.util.Collections;
+import java.util.Map;
+
+import com.ch.SimplexNoise;
+import com.ch.voxel.Block;
+import com.ch.voxel.BlockStorage;
+import com.ch.voxel.Chunk;
+
+/*
+ * fills the chunk from 3d noise. shaped by the column it's the terrain: solid where the noise,
+ * weighted by the roughness, outweighs the height above the surface. a chunk the noise can't
+ * reach past the surface is filled without sampling. unshaped it's the original generator,
+ * solid wherever the noise is above 0.1.
+ */
+public class DensityStage implements Stage {
+
+	// density is sampled every SPACING blocks and interpolated in between, 1 samples every block.
+	// rounded down to a power of two no bigger than CHUNK_SIZE, so the lattice fits the chunk
+	public static int SPACING = 1;
+
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+	static final float FALLOFF = 16; // blocks above the surface where a noise of 1 still makes it solid
+	private static final float SHAPED_SCALE = 24;
+
+	private final boolean shaped;
+
+	public DensityStage(boolean shaped) {
+		this.shaped = shaped;
+	}
+
+	@Override
+	public String getName() {
+		return "density";
+	}
+
+	@Override
+	public String[] getDependencies() {
+		return shaped ? new String[] { "column" } : new String[0];
+	}
+
+	@Override
+	public Map<String, String> getParameters() {
+		return Collections.singletonMap("spacing", Integer.toString(spacing(SPACING)));
+	}
+
+	@Override
+	public void apply(GenContext ctx) {
+		int ox = ctx.getX() * SIZE, oy = ctx.getY() * SIZE, oz = ctx.getZ() * SIZE;
+		float[] density = ctx.density;
+		if (!shaped) {
+			sample(ctx.getNoise(), density, ox, oy, oz, SPACING, 10f);
+			for (int i = 0; i < BlockStorage.SIZE; i++)
+				if (density[i] > 0.1f)
+					ctx.set(i, Block.SOLID);
+			return;
+		}
+
+		Column c = ctx.column;
+		float low = Float.MAX_VALUE, high = -Float.MAX_VALUE; // surface range the noise can reach
+		for (int i = 0; i < SIZE * SIZE; i++) {
+			low = Math.min(low, c.height[i] - FALLOFF * c.roughness[i]);
+			high = Math.max(high, c.height[i] + FALLOFF * c.roughness[i]);
+		}
+		if (oy >= high)
+			return; // all air
+		if (oy + SIZE <= low) {
+			ctx.fill(Block.SOLID);
+			return;
+		}
+
+		sample(ctx.getNoise(), density, ox, oy, oz, SPACING, SHAPED_SCALE);
+		for (int z = 0; z < SIZE; z++) {
+			for (int y = 0; y < SIZE; y++) {
+				int o = Chunk.index(0, y, z);
+				for (int x = 0; x < SIZE; x++) {
+					int col = Column.index(x, z);
+					if (density[o + x] * c.roughness[col] + (c.height[col] - (oy + y)) / FALLOFF > 0)
+						ctx.set(o + x, Block.SOLID);
+				}
+			}
+		}
+	}
+
+	/*
+	 * noise of every block of the chunk at ox, oy, oz divided by scale, laid out like the block
+	 * indices. with a spacing above 1 the noise is only sampled on a lattice of that spacing in
+	 * world coordinates, one point past the far border included, and filled in trilinearly. the
+	 * lattice points on a border are the same for both chunks so they still line up.
+	 * the spacing is rounded down to a power of two up to CHUNK_SIZE.
+	 */
+	public static void sample(SimplexNoise noise, float[] out, int ox, int oy, int oz, int spacing, float scale) {
+		spacing = spacing(spacing);
+		if (spacing <= 1) {
+			noise.noise(out, ox, oy, oz, 1, SIZE, SIZE, SIZE, scale);
+			return;
+		}
+		int n = SIZE / spacing + 1;
+		float[] lattice = new float[n * n * n];
+		noise.noise(lattice, ox, oy, oz, spacing, n, n, n, scale);
+
+		float[] row = new float[n]; // the lattice interpolated in y and z, then x runs along it
+		float step = 1f / spacing;
+		for (int z = 0; z < SIZE; z++) {
+			int lz = z / spacing;
+			float fz = (z - lz * spacing) * step;
+			for (int y = 0; y < SIZE; y++) {
+				int ly = y / spacing;
+				float fy = (y - ly * spacing) * step;
+				int a = (ly + lz * n) * n, b = a + n, c = a + n * n, d = c + n;
+				for (int lx = 0; lx < n; lx++) {
+					float near = lattice[a + lx] + (lattice[b + lx] - lattice[a + lx]) * fy;
+					float far = lattice[c + lx] + (lattice[d + lx] - lattice[c + lx]) * fy;
+					row[lx] = near + (far - near) * fz;
+				}
+				int o = (y + z * SIZE) * SIZE;
+				for (int x = 0; x < SIZE; x++) {
+					int lx = x / spacing;
+					float fx = (x - lx * spacing) * step;
+					out[o + x] = row[lx] + (row[lx + 1] - row[lx]) * fx;
+				}
+			}
+		}
+	}
+	
+	// has to divide the chunk
+	static int spacing(int spacing) {
+		return Integer.highestOneBit(Math.min(spacing, SIZE));
+	}
+	
+	/*
+	 * the same as sample() for the n blocks of one world column from wx, y, wz up, bit for bit.
+	 * the lattice is the one the chunks holding those blocks use.
+	 */
+	static void sampleColumn(SimplexNoise noise, float[] out, int wx, int y, int wz, int n, int spacing, float scale) {
+		spacing = spacing(spacing);
+		if (spacing <= 1) {
+			noise.noise(out, wx, y, wz, 1, 1, n, 1, scale);
+			return;
+		}
+		int x0 = Math.floorDiv(wx, spacing) * spacing, y0 = Math.floorDiv(y, spacing) * spacing, z0 = Math.floorDiv(wz, spacing) * spacing;
+		int m = (y + n - 1 - y0) / spacing + 2; // lattice points along y, one past the last block
+		float[] lattice = new float[2 * m * 2];
+		noise.noise(lattice, x0, y0, z0, spacing, 2, m, 2, scale);
+		float step = 1f / spacing;
+		float fx = (wx - x0) * step, fz = (wz - z0) * step;
+		for (int i = 0; i < n; i++) {
+			int ly = (y + i - y0) / spacing;
+			float fy = (y + i - y0 - ly * spacing) * step;
+			int a = ly * 2, b = a + 2, c = a + m * 2, d = c + 2;
+			float near = lattice[a] + (lattice[b] - lattice[a]) * fy;
+			float far = lattice[c] + (lattice[d] - lattice[c]) * fy;
+			float row0 = near + (far - near) * fz;
+			near = lattice[a + 1] + (lattice[b + 1] - lattice[a + 1]) * fy;
+			far = lattice[c + 1] + (lattice[d + 1] - lattice[c + 1]) * fy;
+			float row1 = near + (far - near) * fz;
+			out[i] = row0 + (row1 - row0) * fx;
+		}
+	}
+	
+	/*
+	 * the highest block from low to high of the world column at wx, wz the shaped density makes
+	 * solid, low - 1 if there is none. needs only the noise and the column's height and roughness,
+	 * not the chunk, and agrees with what apply() generates.
+	 */
+	static int top(SimplexNoise noise, int wx, int wz, float height, float roughness, int low, int high) {
+		int n = high - low + 1;
+		if (n <= 0)
+			return low - 1;
+		float[] density = new float[n];
+		sampleColumn(noise, density, wx, low, wz, n, SPACING, SHAPED_SCALE);
+		for (int i = n - 1; i >= 0; i--)
+			if (density[i] * roughness + (height - (low + i)) / FALLOFF > 0)
+				return low + i;
+		return low - 1;
+	}
+
+}
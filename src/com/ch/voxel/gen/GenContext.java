@@ -0,0 +1,86 @@
+package com.ch.voxel.gen;
+
+import com.ch.SimplexNoise;
+import com.ch.voxel.Block;
+import com.ch.voxel.BlockStorage;
+import com.ch.voxel.Chunk;
+import com.ch.voxel.UniformStorage;
+
+/*
+ * the chunk being generated as the stages see it. one per generating thread, reused from
+ * chunk to chunk, so the big buffers are only allocated once per thread.
+ */
+public class GenContext {
+
+	private static final int SIZE = Chunk.CHUNK_SIZE;
+
+	private int x, y, z; // in chunks
+	private SimplexNoise noise;
+	private BlockStorage blocks;
+
+	public Column column; // set by the column stage
+	public final float[] density = new float[BlockStorage.SIZE]; // laid out like the block indices
+	public final float[] scratch = new float[BlockStorage.SIZE];
+
+	void reset(int x, int y, int z, SimplexNoise noise) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.noise = noise;
+		blocks = UniformStorage.AIR; // upgraded on the first solid block
+		column = null;
+	}
+
+	BlockStorage finish() {
+		BlockStorage b = blocks.optimize();
+		blocks = null;
+		column = null;
+		return b;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getZ() {
+		return z;
+	}
+
+	public SimplexNoise getNoise() {
+		return noise;
+	}
+
+	public short get(int index) {
+		return blocks.get(index);
+	}
+
+	public void set(int index, short id) {
+		blocks = blocks.set(index, id);
+	}
+
+	// every block of the chunk
+	public void fill(short id) {
+		blocks = UniformStorage.of(id);
+	}
+
+	public boolean isEmpty() {
+		return blocks == UniformStorage.AIR;
+	}
+
+	/*
+	 * sets the block at world coordinates if it's air. blocks outside this chunk are skipped,
+	 * a stage reaching past the border has to place them again when the chunk holding them is generated.
+	 */
+	public void place(int wx, int wy, int wz, short id) {
+		if (Math.floorDiv(wx, SIZE) != x || Math.floorDiv(wy, SIZE) != y || Math.floorDiv(wz, SIZE) != z)
+			return;
+		int i = Chunk.index(Math.floorMod(wx, SIZE), Math.floorMod(wy, SIZE), Math.floorMod(wz, SIZE));
+		if (get(i) == Block.AIR)
+			set(i, id);
+	}
+
+}
@@ -0,0 +1,154 @@
+package com.ch.voxel.gen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.ch.SimplexNoise;
+import com.ch.voxel.BlockStorage;
+
+/*
+ * generates chunks by running a list of stages over them. the stages are put in dependency
+ * order once, when the pipeline is built. generate() can be called from any number of threads
+ * at once, each runs the stages over its own GenContext, and the time spent in every stage is
+ * added up across all of them.
+ * a chunk is generated from the seed and its position alone, stages never write into other chunks.
+ */
+public class Pipeline {
+
+	private static final ThreadLocal<GenContext> CONTEXT = new ThreadLocal<GenContext>() {
+		@Override
+		protected GenContext initialValue() {
+			return new GenContext();
+		}
+	};
+
+	private final String name;
+	private final SimplexNoise noise;
+	private final Stage[] stages; // in dependency order
+	private final LongAdder[] nanos;
+	private final LongAdder generated = new LongAdder();
+
+	public Pipeline(String name, SimplexNoise noise, Stage... stages) {
+		this.name = name;
+		this.noise = noise;
+		this.stages = sort(stages);
+		nanos = new LongAdder[stages.length];
+		for (int i = 0; i < nanos.length; i++)
+			nanos[i] = new LongAdder();
+	}
+
+	// height and biome shaped terrain with caves and trees
+	public static Pipeline standard(SimplexNoise noise) {
+		ColumnStage columns = new ColumnStage();
+		return new Pipeline("standard", noise, new DecorateStage(columns), new CarveStage(), new DensityStage(true), columns);
+	}
+
+	// plain 3d noise, what worlds were generated with before the pipeline
+	public static Pipeline legacy(SimplexNoise noise) {
+		return new Pipeline("legacy", noise, new DensityStage(false));
+	}
+	
+	// one of the pipelines above by its name, which is what a world records it was generated by
+	public static Pipeline byName(String name, SimplexNoise noise) {
+		switch (name) {
+		case "standard":
+			return standard(noise);
+		case "legacy":
+			return legacy(noise);
+		default:
+			throw new IllegalArgumentException("unknown generator " + name);
+		}
+	}
+
+	// every stage after the ones it depends on, otherwise in the order given
+	private static Stage[] sort(Stage[] stages) {
+		Map<String, Stage> byName = new HashMap<>();
+		for (Stage s : stages)
+			if (byName.put(s.getName(), s) != null)
+				throw new IllegalArgumentException("two stages named " + s.getName());
+		for (Stage s : stages)
+			for (String d : s.getDependencies())
+				if (!byName.containsKey(d))
+					throw new IllegalArgumentException("stage " + s.getName() + " needs " + d + ", which isn't in the pipeline");
+
+		List<Stage> order = new ArrayList<>();
+		Set<String> done = new HashSet<>();
+		while (order.size() < stages.length) {
+			boolean progress = false;
+			for (Stage s : stages) {
+				if (!done.contains(s.getName()) && done.containsAll(Arrays.asList(s.getDependencies()))) {
+					order.add(s);
+					done.add(s.getName());
+					progress = true;
+				}
+			}
+			if (!progress) {
+				List<String> left = new ArrayList<>(byName.keySet());
+				left.removeAll(done);
+				throw new IllegalArgumentException("stages depend on each other: " + left);
+			}
+		}
+		return order.toArray(new Stage[0]);
+	}
+
+	public BlockStorage generate(int x, int y, int z) {
+		GenContext ctx = CONTEXT.get();
+		ctx.reset(x, y, z, noise);
+		for (int i = 0; i < stages.length; i++) {
+			long start = System.nanoTime();
+			stages[i].apply(ctx);
+			nanos[i].add(System.nanoTime() - start);
+		}
+		generated.increment();
+		return ctx.finish();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public SimplexNoise getNoise() {
+		return noise;
+	}
+
+	// what the stages are set up with, as stage.parameter
+	public Map<String, String> getParameters() {
+		Map<String, String> all = new TreeMap<>();
+		for (Stage s : stages)
+			for (Map.Entry<String, String> e : s.getParameters().entrySet())
+				all.put(s.getName() + "." + e.getKey(), e.getValue());
+		return all;
+	}
+
+	// in the order they run
+	public Stage[] getStages() {
+		return stages.clone();
+	}
+
+	// total over every chunk so far, same order as getStages()
+	public long getStageNanos(int stage) {
+		return nanos[stage].sum();
+	}
+
+	public long getGeneratedCount() {
+		return generated.sum();
+	}
+
+	// average time per chunk of every stage
+	@Override
+	public String toString() {
+		long n = Math.max(1, generated.sum());
+		StringBuilder sb = new StringBuilder("generated " + generated.sum() + " chunks, per chunk");
+		for (int i = 0; i < stages.length; i++)
+			sb.append(String.format(" %s %.2f ms", stages[i].getName(), nanos[i].sum() / 1e6 / n));
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,27 @@
+package com.ch.voxel.gen;
+
+import java.util.Collections;
+import java.util.Map;
+
+/*
+ * one step of generating a chunk. a Pipeline runs its stages in an order where every stage comes
+ * after the ones named by getDependencies(). a stage is shared by every generating thread, so
+ * anything it keeps between chunks has to be thread safe, the per chunk state lives in the GenContext.
+ */
+public interface Stage {
+
+	String getName();
+
+	// names of the stages that have to run first
+	default String[] getDependencies() {
+		return new String[0];
+	}
+
+	void apply(GenContext ctx);
+
+	// settings other than the seed that change what it generates. a world records them, so it's never generated with others
+	default Map<String, String> getParameters() {
+		return Collections.emptyMap();
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.ch.voxel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.ch.SimplexNoise;
+import com.ch.voxel.gen.Pipeline;
+
+/*
+ * walks the camera one chunk at a time in all 26 directions, across zero and one long jump.
+ * after every move the loaded chunks have to be exactly the view and linked to exactly their
+ * loaded neighbours, chunks that left have to be unlinked.
+ * no gl needed, meshes are built but never uploaded. runs in a temp dir, exits non zero on failure.
+ */
+public class WorldWalkTest {
+
+	private static final int DISTANCE = 1, VERTICAL = 1, S = Chunk.CHUNK_SIZE;
+	private static final int[][] OFFSETS = new int[Block.FACES][];
+	static {
+		OFFSETS[Block.FT] = new int[] { 0, 0, -1 };
+		OFFSETS[Block.BK] = new int[] { 0, 0, 1 };
+		OFFSETS[Block.TP] = new int[] { 0, 1, 0 };
+		OFFSETS[Block.BT] = new int[] { 0, -1, 0 };
+		OFFSETS[Block.LT] = new int[] { -1, 0, 0 };
+		OFFSETS[Block.RT] = new int[] { 1, 0, 0 };
+	}
+
+	private static final List<Chunk> seen = new ArrayList<>();
+
+	public static void main(String[] args) throws Exception {
+		Prefetcher.LOOK_AHEAD = 0; // the view follows the camera only
+		Path dir = Files.createTempDirectory("walk");
+		World w = new World(dir, Pipeline.legacy(SimplexNoise.DEFAULT));
+		try {
+			w.setRenderDistance(DISTANCE, VERTICAL);
+			int cx = 0, cy = 0, cz = 0, moves = 0;
+			moveTo(w, cx, cy, cz);
+			for (int dx = -1; dx <= 1; dx++)
+				for (int dy = -1; dy <= 1; dy++)
+					for (int dz = -1; dz <= 1; dz++) {
+						if (dx == 0 && dy == 0 && dz == 0)
+							continue;
+						for (int step = 0; step < 2; step++, moves++)
+							moveTo(w, cx += dx, cy += dy, cz += dz);
+					}
+			// just below zero has to floor instead of truncating
+			w.updatePos(-0.5f, 0.5f, -0.5f);
+			settle(w, -1, 0, -1);
+			// further than the view reaches
+			moveTo(w, 100, -7, 33);
+			System.out.println("WorldWalkTest ok, " + (moves + 3) + " moves, " + seen.size() + " chunks built");
+		} catch (AssertionError e) {
+			e.printStackTrace();
+			System.exit(1);
+		} finally {
+			w.close();
+			try (Stream<Path> files = Files.walk(dir)) {
+				files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+			}
+		}
+	}
+
+	private static void moveTo(World w, int cx, int cy, int cz) throws InterruptedException {
+		w.updatePos(cx * S + 0.5f, cy * S + 0.5f, cz * S + 0.5f);
+		settle(w, cx, cy, cz);
+	}
+
+	// installs whatever the loader builds until nothing is pending, then checks the map
+	private static void settle(World w, int cx, int cy, int cz) throws InterruptedException {
+		long deadline = System.nanoTime() + 60_000_000_000L;
+		while (w.getPendingCount() > 0) {
+			Chunk c = w.pollBuilt();
+			if (c == null) {
+				if (System.nanoTime() > deadline)
+					throw new AssertionError(w.getPendingCount() + " chunks never arrived at " + cx + "," + cy + "," + cz);
+				Thread.sleep(1);
+				continue;
+			}
+			if (!seen.contains(c))
+				seen.add(c);
+			w.accept(c);
+		}
+		check(w, cx, cy, cz);
+	}
+
+	private static void check(World w, int cx, int cy, int cz) {
+		int expected = 0;
+		for (int dx = -DISTANCE; dx <= DISTANCE; dx++)
+			for (int dy = -VERTICAL; dy <= VERTICAL; dy++)
+				for (int dz = -DISTANCE; dz <= DISTANCE; dz++) {
+					if (dx * dx + dz * dz > DISTANCE * DISTANCE)
+						continue;
+					expected++;
+					if (w.getChunk(cx + dx, cy + dy, cz + dz) == null)
+						throw new AssertionError("missing " + (cx + dx) + "," + (cy + dy) + "," + (cz + dz) + " around " + cx + "," + cy + "," + cz);
+				}
+		if (w.getLoadedCount() != expected)
+			throw new AssertionError(w.getLoadedCount() + " loaded, expected " + expected + " around " + cx + "," + cy + "," + cz);
+
+		for (Chunk c : seen) {
+			boolean loaded = w.getChunk(c.x, c.y, c.z) == c;
+			for (int f = 0; f < Block.FACES; f++) {
+				Chunk n = c.getNeighbor(f);
+				if (!loaded) {
+					if (n != null)
+						throw new AssertionError("dropped " + c.x + "," + c.y + "," + c.z + " still linked on face " + f);
+					continue;
+				}
+				Chunk e = w.getChunk(c.x + OFFSETS[f][0], c.y + OFFSETS[f][1], c.z + OFFSETS[f][2]);
+				if (n != e)
+					throw new AssertionError("bad link " + c.x + "," + c.y + "," + c.z + " face " + f);
+			}
+		}
+	}
+
+}